@@ -0,0 +1,267 @@
+/*-
+ * #%L
+ * XTerm Console Addon
+ * %%
+ * Copyright (C) 2020 - 2026 Flowing Code
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.flowingcode.vaadin.addons.xterm;
+
+import static com.flowingcode.vaadin.addons.xterm.CellStyle.BG_SHIFT;
+import static com.flowingcode.vaadin.addons.xterm.CellStyle.BOLD;
+import static com.flowingcode.vaadin.addons.xterm.CellStyle.DIM;
+import static com.flowingcode.vaadin.addons.xterm.CellStyle.FG_SHIFT;
+import static com.flowingcode.vaadin.addons.xterm.CellStyle.INVERSE;
+import static com.flowingcode.vaadin.addons.xterm.CellStyle.ITALIC;
+import static com.flowingcode.vaadin.addons.xterm.CellStyle.STRIKETHROUGH;
+import static com.flowingcode.vaadin.addons.xterm.CellStyle.UNDERLINE;
+
+import java.io.Serializable;
+import java.util.Objects;
+
+/**
+ * Builds styled output for a terminal in a reusable buffer, and writes it with a single call to
+ * {@link XTermBase#write(String)}.
+ * <p>
+ * Style changes are lazy: they take effect when text is appended, and only the SGR parameters
+ * that differ from the style of the previous text are sent. Changing the style several times
+ * without appending text in between, or setting the style that is already in effect, sends
+ * nothing. Each {@link #flush()} ends with the default style, so that the output written by other
+ * means is not affected.
+ * </p>
+ * <p>
+ * The buffer is kept between flushes, so that a writer can be reused for every update of a view.
+ * Instances of this class are not thread-safe.
+ * </p>
+ *
+ * <pre>{@code
+ * AnsiWriter out = new AnsiWriter(xterm);
+ * for (Row row : rows) {
+ *   out.foreground(row.ok ? CellStyle.GREEN : CellStyle.RED).append(row.status);
+ *   out.resetStyle().append(' ').append(row.name).newLine();
+ * }
+ * out.flush();
+ * }</pre>
+ */
+@SuppressWarnings("serial")
+public final class AnsiWriter implements Appendable, Serializable {
+
+  /** Buffers larger than this are released after flushing. */
+  private static final int MAX_RETAINED_CAPACITY = 64 * 1024;
+
+  private final XTermBase xterm;
+
+  private final StringBuilder buffer = new StringBuilder();
+
+  /** The style of the text that has been appended. */
+  private long current;
+
+  /** The style of the next text. */
+  private long style;
+
+  /** Creates a new writer for the given terminal. */
+  public AnsiWriter(XTermBase xterm) {
+    this.xterm = Objects.requireNonNull(xterm);
+  }
+
+  /** Returns the style of the next text. */
+  public CellStyle getStyle() {
+    return CellStyle.of(style);
+  }
+
+  /** Sets the style of the next text. */
+  public AnsiWriter style(CellStyle style) {
+    this.style = style.bits();
+    return this;
+  }
+
+  /** Sets the default style for the next text. */
+  public AnsiWriter resetStyle() {
+    style = 0;
+    return this;
+  }
+
+  /**
+   * Sets the foreground color of the next text.
+   *
+   * @param color a color, as defined by {@link CellStyle}
+   * @throws IllegalArgumentException if the color is not valid
+   */
+  public AnsiWriter foreground(int color) {
+    style = CellStyle.withColor(style, FG_SHIFT, color);
+    return this;
+  }
+
+  /**
+   * Sets the background color of the next text.
+   *
+   * @param color a color, as defined by {@link CellStyle}
+   * @throws IllegalArgumentException if the color is not valid
+   */
+  public AnsiWriter background(int color) {
+    style = CellStyle.withColor(style, BG_SHIFT, color);
+    return this;
+  }
+
+  /** Sets whether the next text is bold. */
+  public AnsiWriter bold(boolean bold) {
+    return flag(BOLD, bold);
+  }
+
+  /** Sets whether the next text is dim (faint). */
+  public AnsiWriter dim(boolean dim) {
+    return flag(DIM, dim);
+  }
+
+  /** Sets whether the next text is italic. */
+  public AnsiWriter italic(boolean italic) {
+    return flag(ITALIC, italic);
+  }
+
+  /** Sets whether the next text is underlined. */
+  public AnsiWriter underline(boolean underline) {
+    return flag(UNDERLINE, underline);
+  }
+
+  /** Sets whether the next text is shown with inverted colors. */
+  public AnsiWriter inverse(boolean inverse) {
+    return flag(INVERSE, inverse);
+  }
+
+  /** Sets whether the next text is crossed out. */
+  public AnsiWriter strikethrough(boolean strikethrough) {
+    return flag(STRIKETHROUGH, strikethrough);
+  }
+
+  private AnsiWriter flag(int flag, boolean value) {
+    style = value ? style | flag : style & ~flag;
+    return this;
+  }
+
+  /** Sends the pending style change, if any. */
+  private StringBuilder styled() {
+    Sgr.append(buffer, current, style);
+    current = style;
+    return buffer;
+  }
+
+  @Override
+  public AnsiWriter append(CharSequence text) {
+    if (text == null || text.length() > 0) {
+      styled().append(text);
+    }
+    return this;
+  }
+
+  @Override
+  public AnsiWriter append(CharSequence text, int start, int end) {
+    if (start != end) {
+      styled().append(text, start, end);
+    }
+    return this;
+  }
+
+  @Override
+  public AnsiWriter append(char c) {
+    styled().append(c);
+    return this;
+  }
+
+  /** Appends the decimal representation of a number. */
+  public AnsiWriter append(long value) {
+    styled().append(value);
+    return this;
+  }
+
+  /**
+   * Appends a line break. The style is not changed, but the background color of the next line is
+   * only filled as text is written to it.
+   */
+  public AnsiWriter newLine() {
+    buffer.append("\r\n");
+    return this;
+  }
+
+  /** Moves the cursor to the given column of the current line, where {@code 0} is the first one. */
+  public AnsiWriter cursorColumn(int column) {
+    if (column < 0) {
+      throw new IllegalArgumentException("column must not be negative");
+    }
+    buffer.append("\033[");
+    if (column > 0) {
+      buffer.append(column + 1);
+    }
+    buffer.append('G');
+    return this;
+  }
+
+  /** Erases the current line. */
+  public AnsiWriter eraseLine() {
+    buffer.append("\033[2K");
+    return this;
+  }
+
+  /**
+   * Erases the logical line of the cursor, that is, the current line and the lines that are
+   * wrapped with it. This sequence is understood by terminals with {@link ITerminalConsole}.
+   */
+  public AnsiWriter eraseLogicalLine() {
+    buffer.append("\033[<2K");
+    return this;
+  }
+
+  /**
+   * Moves the cursor to the first row of its logical line. This sequence is understood by
+   * terminals with {@link ITerminalConsole}.
+   */
+  public AnsiWriter logicalLineHome() {
+    buffer.append("\033[<H");
+    return this;
+  }
+
+  /** Returns the number of characters in the buffer. */
+  public int length() {
+    return buffer.length();
+  }
+
+  /**
+   * Writes the contents of the buffer to the terminal, followed by a reset to the default style if
+   * needed, and clears the buffer. The style of the next text is kept.
+   *
+   * @return the number of characters that were written
+   */
+  public int flush() {
+    if (current != 0) {
+      Sgr.append(buffer, current, 0);
+      current = 0;
+    }
+    int n = buffer.length();
+    if (n > 0) {
+      xterm.write(buffer.toString());
+      buffer.setLength(0);
+      if (buffer.capacity() > MAX_RETAINED_CAPACITY) {
+        buffer.trimToSize();
+      }
+    }
+    return n;
+  }
+
+  /** Returns the contents of the buffer, without the reset that is added by {@link #flush()}. */
+  @Override
+  public String toString() {
+    return buffer.toString();
+  }
+
+}
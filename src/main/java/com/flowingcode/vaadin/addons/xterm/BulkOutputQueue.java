@@ -0,0 +1,163 @@
+/*-
+ * #%L
+ * XTerm Console Addon
+ * %%
+ * Copyright (C) 2020 - 2026 Flowing Code
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.flowingcode.vaadin.addons.xterm;
+
+import java.io.Serializable;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+
+/**
+ * Queues the output of the bulk lane of a terminal, split into chunks of at most
+ * {@value #CHUNK_SIZE} bytes or characters. Only a window of chunks may be pending acknowledgement
+ * from the client at a time, so that interactive output never queues behind more than a window
+ * of bulk output on the client.
+ * <p>
+ * Chunks are either strings or UTF-8 encoded byte arrays. Each chunk is acknowledged by its length.
+ * </p>
+ */
+@SuppressWarnings("serial")
+final class BulkOutputQueue implements Serializable {
+
+  static final int CHUNK_SIZE = 16 * 1024;
+
+  private final Deque<Object> chunks = new ArrayDeque<>();
+
+  /** The {@link System#nanoTime()} at which each chunk was queued. */
+  private final Deque<Long> queuedAt = new ArrayDeque<>();
+
+  private int window;
+
+  private long inFlight;
+
+  private long queued;
+
+  BulkOutputQueue(int window) {
+    this.window = window;
+  }
+
+  void setWindow(int window) {
+    this.window = window;
+  }
+
+  int getWindow() {
+    return window;
+  }
+
+  /** Appends text to the queue. */
+  void add(String data) {
+    int pos = 0;
+    Object last = chunks.peekLast();
+    if (last instanceof String && ((String) last).length() < CHUNK_SIZE) {
+      pos = Math.min(data.length(), CHUNK_SIZE - ((String) last).length());
+      chunks.pollLast();
+      chunks.add(last + data.substring(0, pos));
+    }
+    while (pos < data.length()) {
+      int end = Math.min(data.length(), pos + CHUNK_SIZE);
+      addChunk(data.substring(pos, end));
+      pos = end;
+    }
+    queued += data.length();
+  }
+
+  /** Appends UTF-8 encoded bytes to the queue. */
+  void add(byte[] data) {
+    int pos = 0;
+    Object last = chunks.peekLast();
+    if (last instanceof byte[] && ((byte[]) last).length < CHUNK_SIZE) {
+      byte[] head = (byte[]) last;
+      pos = Math.min(data.length, CHUNK_SIZE - head.length);
+      byte[] merged = Arrays.copyOf(head, head.length + pos);
+      System.arraycopy(data, 0, merged, head.length, pos);
+      chunks.pollLast();
+      chunks.add(merged);
+    }
+    while (pos < data.length) {
+      int end = Math.min(data.length, pos + CHUNK_SIZE);
+      addChunk(Arrays.copyOfRange(data, pos, end));
+      pos = end;
+    }
+    queued += data.length;
+  }
+
+  private void addChunk(Object chunk) {
+    chunks.add(chunk);
+    queuedAt.add(System.nanoTime());
+  }
+
+  /**
+   * Returns the next chunk and counts it as in flight, or {@code null} if the queue is empty, the
+   * window is full, or the next chunk is larger than {@code limit}.
+   */
+  Object poll(int limit) {
+    if (!isSendable() || length(chunks.peek()) > limit) {
+      return null;
+    }
+    queuedAt.poll();
+    Object chunk = chunks.poll();
+    int length = length(chunk);
+    queued -= length;
+    inFlight += length;
+    return chunk;
+  }
+
+  static int length(Object chunk) {
+    return chunk instanceof String ? ((String) chunk).length() : ((byte[]) chunk).length;
+  }
+
+  /** Releases {@code n} acknowledged bytes or characters from the window. */
+  void acknowledge(long n) {
+    inFlight = Math.max(0, inFlight - n);
+  }
+
+  /**
+   * Discards the queued chunks and forgets about the chunks in flight, whose acknowledgements will
+   * never arrive. This is called when the client-side terminal is discarded, so that output meant
+   * for it is not replayed into a new one.
+   */
+  void reset() {
+    chunks.clear();
+    queuedAt.clear();
+    queued = 0;
+    inFlight = 0;
+  }
+
+  boolean isEmpty() {
+    return chunks.isEmpty();
+  }
+
+  /** Returns whether there is a chunk that could be sent, as far as the window is concerned. */
+  boolean isSendable() {
+    return !chunks.isEmpty() && inFlight < window;
+  }
+
+  /** Returns how long the oldest chunk has been queued, in nanoseconds. */
+  long getLatency() {
+    Long oldest = queuedAt.peek();
+    return oldest == null ? 0 : System.nanoTime() - oldest;
+  }
+
+  /** Returns the number of bytes or characters that have not been sent yet. */
+  long getQueued() {
+    return queued;
+  }
+
+}
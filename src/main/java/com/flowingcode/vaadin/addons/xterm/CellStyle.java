@@ -0,0 +1,242 @@
+/*-
+ * #%L
+ * XTerm Console Addon
+ * %%
+ * Copyright (C) 2020 - 2026 Flowing Code
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.flowingcode.vaadin.addons.xterm;
+
+import java.io.Serializable;
+
+/**
+ * An immutable set of character attributes (colors and SGR flags) of a terminal cell.
+ * <p>
+ * Colors are either {@link #DEFAULT_COLOR}, an index in the 256-color palette (where {@code 0} to
+ * {@code 15} are the ANSI colors), or a {@linkplain #rgb(int, int, int) true color}.
+ * </p>
+ *
+ * <pre>{@code
+ * static final CellStyle ERROR = CellStyle.DEFAULT.withForeground(CellStyle.RED).withBold(true);
+ * }</pre>
+ */
+@SuppressWarnings("serial")
+public final class CellStyle implements Serializable {
+
+  /** The default color of the terminal. */
+  public static final int DEFAULT_COLOR = -1;
+
+  public static final int BLACK = 0;
+  public static final int RED = 1;
+  public static final int GREEN = 2;
+  public static final int YELLOW = 3;
+  public static final int BLUE = 4;
+  public static final int MAGENTA = 5;
+  public static final int CYAN = 6;
+  public static final int WHITE = 7;
+
+  /** The style with the default colors and no attributes. */
+  public static final CellStyle DEFAULT = new CellStyle(0);
+
+  // packed representation, also used by TerminalModel and Sgr
+  static final int BOLD = 1;
+  static final int DIM = 2;
+  static final int ITALIC = 4;
+  static final int UNDERLINE = 8;
+  static final int BLINK = 16;
+  static final int INVERSE = 32;
+  static final int INVISIBLE = 64;
+  static final int STRIKETHROUGH = 128;
+  static final int FLAGS = 0xff;
+
+  static final int FG_SHIFT = 8;
+  static final int BG_SHIFT = 34;
+  static final long COLOR_MASK = (1L << 26) - 1;
+  static final int PALETTE_COLOR = 1 << 24;
+  static final int RGB_COLOR = 2 << 24;
+
+  private final long bits;
+
+  private CellStyle(long bits) {
+    this.bits = bits;
+  }
+
+  /** Returns the style with the given packed representation. */
+  static CellStyle of(long bits) {
+    return bits == 0 ? DEFAULT : new CellStyle(bits);
+  }
+
+  /** Returns the packed representation of this style. */
+  long bits() {
+    return bits;
+  }
+
+  /** Returns a true color with the given components, from {@code 0} to {@code 255}. */
+  public static int rgb(int red, int green, int blue) {
+    return RGB_COLOR | (red & 0xff) << 16 | (green & 0xff) << 8 | blue & 0xff;
+  }
+
+  /** Converts a color to its packed representation. */
+  static int pack(int color) {
+    if (color == DEFAULT_COLOR) {
+      return 0;
+    } else if (color >= 0 && color <= 255) {
+      return PALETTE_COLOR | color;
+    } else if ((color & ~0xffffff) == RGB_COLOR) {
+      return color;
+    }
+    throw new IllegalArgumentException("Invalid color: " + color);
+  }
+
+  private static int unpack(int color) {
+    if (color == 0) {
+      return DEFAULT_COLOR;
+    }
+    return (color & ~0xffffff) == PALETTE_COLOR ? color & 0xff : color;
+  }
+
+  private int color(int shift) {
+    return (int) (bits >>> shift & COLOR_MASK);
+  }
+
+  /** Replaces the color at {@code shift} in a packed representation. */
+  static long withColor(long bits, int shift, int color) {
+    return bits & ~(COLOR_MASK << shift) | (long) pack(color) << shift;
+  }
+
+  private CellStyle withColor(int shift, int color) {
+    return of(withColor(bits, shift, color));
+  }
+
+  private CellStyle withFlag(int flag, boolean value) {
+    return of(value ? bits | flag : bits & ~flag);
+  }
+
+  /** Returns the foreground color. */
+  public int getForeground() {
+    return unpack(color(FG_SHIFT));
+  }
+
+  /** Returns the background color. */
+  public int getBackground() {
+    return unpack(color(BG_SHIFT));
+  }
+
+  /** Returns a copy of this style with the given foreground color. */
+  public CellStyle withForeground(int color) {
+    return withColor(FG_SHIFT, color);
+  }
+
+  /** Returns a copy of this style with the given background color. */
+  public CellStyle withBackground(int color) {
+    return withColor(BG_SHIFT, color);
+  }
+
+  /** Returns whether the text is bold. */
+  public boolean isBold() {
+    return (bits & BOLD) != 0;
+  }
+
+  /** Returns a copy of this style, with the text bold or not. */
+  public CellStyle withBold(boolean bold) {
+    return withFlag(BOLD, bold);
+  }
+
+  /** Returns whether the text is dim (faint). */
+  public boolean isDim() {
+    return (bits & DIM) != 0;
+  }
+
+  /** Returns a copy of this style, with the text dim (faint) or not. */
+  public CellStyle withDim(boolean dim) {
+    return withFlag(DIM, dim);
+  }
+
+  /** Returns whether the text is italic. */
+  public boolean isItalic() {
+    return (bits & ITALIC) != 0;
+  }
+
+  /** Returns a copy of this style, with the text italic or not. */
+  public CellStyle withItalic(boolean italic) {
+    return withFlag(ITALIC, italic);
+  }
+
+  /** Returns whether the text is underlined. */
+  public boolean isUnderline() {
+    return (bits & UNDERLINE) != 0;
+  }
+
+  /** Returns a copy of this style, with the text underlined or not. */
+  public CellStyle withUnderline(boolean underline) {
+    return withFlag(UNDERLINE, underline);
+  }
+
+  /** Returns whether the text is blinking. */
+  public boolean isBlink() {
+    return (bits & BLINK) != 0;
+  }
+
+  /** Returns a copy of this style, with the text blinking or not. */
+  public CellStyle withBlink(boolean blink) {
+    return withFlag(BLINK, blink);
+  }
+
+  /** Returns whether the text is shown with inverted colors. */
+  public boolean isInverse() {
+    return (bits & INVERSE) != 0;
+  }
+
+  /** Returns a copy of this style, with the text shown with inverted colors or not. */
+  public CellStyle withInverse(boolean inverse) {
+    return withFlag(INVERSE, inverse);
+  }
+
+  /** Returns whether the text is invisible. */
+  public boolean isInvisible() {
+    return (bits & INVISIBLE) != 0;
+  }
+
+  /** Returns a copy of this style, with the text invisible or not. */
+  public CellStyle withInvisible(boolean invisible) {
+    return withFlag(INVISIBLE, invisible);
+  }
+
+  /** Returns whether the text is crossed out. */
+  public boolean isStrikethrough() {
+    return (bits & STRIKETHROUGH) != 0;
+  }
+
+  /** Returns a copy of this style, with the text crossed out or not. */
+  public CellStyle withStrikethrough(boolean strikethrough) {
+    return withFlag(STRIKETHROUGH, strikethrough);
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    return obj instanceof CellStyle && ((CellStyle) obj).bits == bits;
+  }
+
+  @Override
+  public int hashCode() {
+    return Long.hashCode(bits);
+  }
+
+  @Override
+  public String toString() {
+    return "CellStyle[" + Sgr.toSequence(0, bits).replace("\033", "ESC") + "]";
+  }
+
+}
@@ -0,0 +1,57 @@
+/*-
+ * #%L
+ * XTerm Console Addon
+ * %%
+ * Copyright (C) 2020 - 2026 Flowing Code
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.flowingcode.vaadin.addons.xterm;
+
+import com.vaadin.flow.component.ComponentUtil;
+import com.vaadin.flow.component.UI;
+import elemental.json.JsonObject;
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.Map;
+
+/** Keeps track of the {@linkplain TerminalProfile profiles} that have been sent to a UI. */
+@SuppressWarnings("serial")
+final class ClientProfiles implements Serializable {
+
+  private final Map<String, JsonObject> profiles = new HashMap<>();
+
+  private ClientProfiles() {}
+
+  /** Returns the profiles of the given UI. */
+  static ClientProfiles get(UI ui) {
+    ClientProfiles profiles = ComponentUtil.getData(ui, ClientProfiles.class);
+    if (profiles == null) {
+      profiles = new ClientProfiles();
+      ComponentUtil.setData(ui, ClientProfiles.class, profiles);
+    }
+    return profiles;
+  }
+
+  /**
+   * Records that the client knows about {@code profile}.
+   *
+   * @return {@code true} if the definition of the profile has to be sent to the client
+   */
+  boolean define(TerminalProfile profile) {
+    JsonObject options = profile.asJsonObject();
+    return profiles.put(profile.getId(), options) != options;
+  }
+
+}
@@ -21,14 +21,18 @@ package com.flowingcode.vaadin.addons.xterm;
 
 import com.flowingcode.vaadin.jsonmigration.JsonMigration;
 import com.vaadin.flow.dom.Element;
+import com.vaadin.flow.function.SerializableFunction;
 import com.vaadin.flow.server.Version;
 import elemental.json.Json;
 import elemental.json.JsonArray;
+import elemental.json.JsonNull;
 import elemental.json.JsonValue;
 import java.io.Serializable;
 import java.lang.invoke.MethodHandle;
 import java.lang.invoke.MethodHandles;
 import java.lang.invoke.MethodType;
+import java.util.concurrent.CompletableFuture;
+import java.util.regex.Pattern;
 import lombok.SneakyThrows;
 
 /**
@@ -98,15 +102,66 @@ public abstract class ClientTerminalAddon extends TerminalAddon {
    * @see Element#executeJs(String, Serializable...)
    */
   protected final void executeJs(String expression, Serializable... parameters) {
-    String name = getName();
+    xterm.executeJs(templates.get(expression), getName(), encode(parameters));
+  }
+
+  /**
+   * Calls a JavaScript {@code expression} in the context of this add-on, with the specified
+   * {@code parameters}, and returns its result. If the expression returns a {@code Promise}, the
+   * future is completed with the resolved value. The call is ordered with the other commands sent
+   * to the terminal; within a {@linkplain XTermBase#batch(Runnable) batch}, the commands queued
+   * before the call are sent first.
+   *
+   * <pre>{@code
+   * CompletableFuture<String> match = call(JsonValue::asString, "return this.find($0)", term);
+   * }</pre>
+   *
+   * @param mapping a function that converts the result of the expression
+   * @return a future that is completed with the converted result, or with {@code null} if the
+   *         expression returns {@code null} or {@code undefined}
+   * @see XTermBase#setQueryTimeout(java.time.Duration)
+   */
+  protected final <T> CompletableFuture<T> call(SerializableFunction<JsonValue, T> mapping,
+      String expression, Serializable... parameters) {
+    return xterm.fetch(templates.get(expression), getName(), encode(parameters))
+        .thenApply(json -> json == null || json instanceof JsonNull ? null : mapping.apply(json));
+  }
 
+  private static JsonArray encode(Serializable[] parameters) {
     JsonArray args = Json.createArray();
     for (int i = 0; i < parameters.length; i++) {
-      args.set(i, encodeWithTypeInfo(parameters[i]));
+      args.set(i, encode(parameters[i]));
+    }
+    return args;
+  }
+
+  private static JsonValue encode(Serializable parameter) {
+    // basic types are encoded without type information, so they don't need the codec
+    if (parameter == null) {
+      return Json.createNull();
+    } else if (parameter instanceof String) {
+      return Json.create((String) parameter);
+    } else if (parameter instanceof Boolean) {
+      return Json.create((Boolean) parameter);
+    } else if (parameter instanceof Integer || parameter instanceof Double) {
+      return Json.create(((Number) parameter).doubleValue());
+    } else {
+      return encodeWithTypeInfo(parameter);
     }
+  }
 
-    expression = expression.replaceAll("\\$(\\d+)", "\\$1[$1]");
-    xterm.executeJs("(function(){" + expression + "}).apply(this.addons[$0],$1);", name, args);
+  private static final Pattern PARAMETER = Pattern.compile("\\$(\\d+)");
+
+  private static final ExpressionCache templates =
+      new ExpressionCache(ClientTerminalAddon::compile);
+
+  /**
+   * Rewrites {@code $N} into {@code $1[N]}, and wraps the expression in a function applied to the
+   * add-on (passed as {@code $0}) with the array of arguments (passed as {@code $1}).
+   */
+  static String compile(String expression) {
+    expression = PARAMETER.matcher(expression).replaceAll("\\$1[$1]");
+    return "(function(){" + expression + "}).apply(this.addons[$0],$1)";
   }
 
   private static final MethodHandle encodeWithTypeInfo = lookup_encodeWithTypeInfo();
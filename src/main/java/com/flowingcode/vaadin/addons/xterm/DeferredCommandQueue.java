@@ -0,0 +1,172 @@
+/*-
+ * #%L
+ * XTerm Console Addon
+ * %%
+ * Copyright (C) 2020 - 2026 Flowing Code
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.flowingcode.vaadin.addons.xterm;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Queues the commands that are sent to a terminal before it is initialized on the client, or
+ * during a {@linkplain XTermBase#beginUpdate() synchronized update}, and compacts them while they
+ * wait: adjacent writes are concatenated, and an assignment that is immediately superseded by
+ * another assignment to the same property is discarded. Assignments that are separated by other
+ * commands are kept, since those commands may depend on them (for instance, a bell written while
+ * {@code bellStyle} has a different value). The queue is drained as a single JavaScript
+ * invocation.
+ */
+@SuppressWarnings("serial")
+final class DeferredCommandQueue implements Serializable {
+
+  static final String WRITE = "this.terminal.write($0)";
+
+  static final String WRITE_BASE64 = "this.writeBase64($0)";
+
+  static final String SET_OPTIONS = "this.terminal.options=$0";
+
+  private static final Pattern ASSIGNMENT = Pattern.compile("this\\.[\\w.]+=\\$0");
+
+  private static final Pattern PARAMETER = Pattern.compile("\\$(\\d+)");
+
+  private static final class Entry implements Serializable {
+    final String expression;
+    Serializable[] parameters;
+
+    /** The text of merged writes, which is only converted into a parameter when drained. */
+    private StringBuilder text;
+
+    /** The decoded bytes of merged binary writes, which are only encoded when drained. */
+    private byte[] bytes;
+
+    private int length;
+
+    Entry(String expression, Serializable[] parameters) {
+      this.expression = expression;
+      this.parameters = parameters;
+    }
+
+    void appendText(String data) {
+      if (text == null) {
+        text = new StringBuilder((String) parameters[0]);
+      }
+      text.append(data);
+    }
+
+    void appendBase64(String data) {
+      if (bytes == null) {
+        bytes = Base64.getDecoder().decode((String) parameters[0]);
+        length = bytes.length;
+      }
+      byte[] decoded = Base64.getDecoder().decode(data);
+      if (length + decoded.length > bytes.length) {
+        bytes = Arrays.copyOf(bytes, Math.max(2 * bytes.length, length + decoded.length));
+      }
+      System.arraycopy(decoded, 0, bytes, length, decoded.length);
+      length += decoded.length;
+    }
+
+    Serializable[] getParameters() {
+      if (text != null) {
+        return new Serializable[] {text.toString()};
+      } else if (bytes != null) {
+        return new Serializable[] {
+            Base64.getEncoder().encodeToString(Arrays.copyOf(bytes, length))};
+      } else {
+        return parameters;
+      }
+    }
+  }
+
+  private final List<Entry> entries = new ArrayList<>();
+
+  /** Adds a command to the queue. */
+  void add(String expression, Serializable... parameters) {
+    Entry last = entries.isEmpty() ? null : entries.get(entries.size() - 1);
+    if (last == null || !last.expression.equals(expression) || !merge(last, parameters)) {
+      entries.add(new Entry(expression, parameters));
+    }
+  }
+
+  private static boolean merge(Entry entry, Serializable[] parameters) {
+    if (isAssignment(entry.expression) && !entry.expression.equals(SET_OPTIONS)) {
+      entry.parameters = parameters;
+      return true;
+    } else if (entry.expression.equals(WRITE)) {
+      entry.appendText((String) parameters[0]);
+      return true;
+    } else if (entry.expression.equals(WRITE_BASE64)) {
+      // the payload is decoded once and encoded again when drained, not on every append
+      entry.appendBase64((String) parameters[0]);
+      return true;
+    } else {
+      return false;
+    }
+  }
+
+  /** Returns whether {@code expression} assigns its only parameter to a property. */
+  static boolean isAssignment(String expression) {
+    return ASSIGNMENT.matcher(expression).matches();
+  }
+
+  /** Returns the number of queued commands. */
+  int size() {
+    return entries.size();
+  }
+
+  /**
+   * Passes the queued commands, combined into a single expression and its parameters, to
+   * {@code sink}. Nothing is passed if the queue is empty.
+   */
+  void drain(BiConsumer<String, Serializable[]> sink) {
+    if (entries.size() == 1) {
+      sink.accept(entries.get(0).expression, entries.get(0).getParameters());
+    } else if (!entries.isEmpty()) {
+      StringBuilder expression = new StringBuilder();
+      List<Serializable> parameters = new ArrayList<>();
+      for (Entry entry : entries) {
+        // each command runs in its own function, so that a return statement only ends that command
+        expression.append("(()=>{").append(renumber(entry.expression, parameters.size()))
+            .append("\n})();");
+        parameters.addAll(Arrays.asList(entry.getParameters()));
+      }
+      sink.accept(expression.toString(), parameters.toArray(new Serializable[0]));
+    }
+    entries.clear();
+  }
+
+  private static String renumber(String expression, int offset) {
+    if (offset == 0) {
+      return expression;
+    }
+    Matcher matcher = PARAMETER.matcher(expression);
+    StringBuilder sb = new StringBuilder();
+    while (matcher.find()) {
+      matcher.appendReplacement(sb, "\\$" + (Integer.parseInt(matcher.group(1)) + offset));
+    }
+    matcher.appendTail(sb);
+    return sb.toString();
+  }
+
+}
@@ -0,0 +1,67 @@
+/*-
+ * #%L
+ * XTerm Console Addon
+ * %%
+ * Copyright (C) 2020 - 2026 Flowing Code
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.flowingcode.vaadin.addons.xterm;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.UnaryOperator;
+
+/**
+ * A bounded cache of compiled JavaScript expression templates, shared by all terminals. When the
+ * cache is full, the least recently used template is evicted.
+ */
+final class ExpressionCache {
+
+  static final int MAX_SIZE = 256;
+
+  private final Map<String, String> templates = new LinkedHashMap<>(16, 0.75f, true) {
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+      return size() > MAX_SIZE;
+    }
+  };
+
+  private final UnaryOperator<String> compiler;
+
+  /** Creates a cache of the templates compiled by {@code compiler}. */
+  ExpressionCache(UnaryOperator<String> compiler) {
+    this.compiler = compiler;
+  }
+
+  /** Returns the compiled template for {@code expression}. */
+  String get(String expression) {
+    synchronized (templates) {
+      String template = templates.get(expression);
+      if (template == null) {
+        template = compiler.apply(expression);
+        templates.put(expression, template);
+      }
+      return template;
+    }
+  }
+
+  /** Returns the number of cached templates. */
+  int size() {
+    synchronized (templates) {
+      return templates.size();
+    }
+  }
+
+}
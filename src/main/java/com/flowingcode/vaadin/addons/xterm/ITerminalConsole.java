@@ -28,7 +28,6 @@ import com.vaadin.flow.component.DomEvent;
 import com.vaadin.flow.component.EventData;
 import com.vaadin.flow.component.HasElement;
 import com.vaadin.flow.shared.Registration;
-import elemental.json.JsonValue;
 import java.util.concurrent.CompletableFuture;
 import lombok.Getter;
 import lombok.experimental.ExtensionMethod;
@@ -65,10 +64,19 @@ public interface ITerminalConsole extends HasElement {
     ((XTermBase) this).executeJs("this.insertMode=$0", insertMode);
   }
 
-  /** Returns the text in the current line */
+  /**
+   * Returns the text in the current line. When called from a custom key listener, the future is
+   * already completed if the line has been reported by the client after the input that preceded
+   * the key, and after the last command was sent to it. Otherwise, the line is read from the client.
+   */
   default CompletableFuture<String> getCurrentLine() {
-    return getElement().executeJs("return this.currentLine").toCompletableFuture()
-        .thenApply(JsonValue::asString);
+    XTermBase xterm = (XTermBase) this;
+    InputLineModel model = xterm.getInputModel();
+    String line = model != null ? model.getLine() : null;
+    if (line != null) {
+      return CompletableFuture.completedFuture(line);
+    }
+    return xterm.query(TerminalValue.CURRENT_LINE);
   }
 
   /** Sets the command line prompt. */
@@ -111,6 +111,30 @@ public interface ITerminalOptions extends Serializable {
   /** The color theme of the terminal. */
   void setTheme(TerminalTheme theme);
 
+  /**
+   * Applies the options of a profile. Options that are not set by the profile are not changed.
+   * The default implementation calls the setter of each option that is set by the profile.
+   *
+   * @see TerminalProfile
+   */
+  default void setProfile(TerminalProfile profile) {
+    if (profile.getTheme() != null) {
+      setTheme(profile.getTheme());
+    }
+    if (profile.getFontFamily() != null) {
+      setFontFamily(profile.getFontFamily());
+    }
+    if (profile.getFontSize() != null) {
+      setFontSize(profile.getFontSize());
+    }
+    if (profile.getCursorStyle() != null) {
+      setCursorStyle(profile.getCursorStyle());
+    }
+    if (profile.getCursorBlink() != null) {
+      setCursorBlink(profile.getCursorBlink());
+    }
+  }
+
   /**
    * The type of renderer to use, this allows using the fallback DOM renderer when canvas is too
    * slow for the environment. The following features do not work when the DOM renderer is used:
@@ -0,0 +1,130 @@
+/*-
+ * #%L
+ * XTerm Console Addon
+ * %%
+ * Copyright (C) 2020 - 2026 Flowing Code
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.flowingcode.vaadin.addons.xterm;
+
+import java.io.Serializable;
+
+/**
+ * The state of the input line and of the selection, as last reported by the client.
+ * <p>
+ * Reports are tagged with a generation. The server advances the generation (at most once per
+ * response) whenever it sends a command that may change the contents of the terminal, and the
+ * client adopts a new generation only after it has processed the commands of that response. A
+ * report is accepted only if its generation is the current one, so the model is in sync from the
+ * moment such a report is received until the server sends another command.
+ * </p>
+ * <p>
+ * User input (typing, pasting and changes of the selection) is numbered by the client. Reports
+ * carry the number of the last input whose output has been parsed, and custom key events carry the
+ * number of the last input before the key. Since reports are debounced, a report is only known to
+ * be current while a key event is handled, and only if it reflects the input before the key.
+ * Outside of key events (for instance, in a click listener or in a push task), the model is always
+ * out of sync.
+ * </p>
+ */
+@SuppressWarnings("serial")
+final class InputLineModel implements Serializable {
+
+  /** Sets the generation in the client, once the commands of the current response are processed. */
+  static final String SET_GENERATION = "this.setInputGeneration($0)";
+
+  private int generation;
+
+  private boolean advanced;
+
+  private boolean synced;
+
+  private int reportedInput;
+
+  /** The number of the input before the key event being handled, or -1 outside key events. */
+  private int keyInput = -1;
+
+  private String line;
+
+  private String selection;
+
+  /**
+   * Marks the model out of sync, because a command is about to be sent.
+   *
+   * @return {@code true} if the generation has been advanced, and must be sent to the client
+   */
+  boolean invalidate() {
+    synced = false;
+    if (advanced) {
+      return false;
+    }
+    advanced = true;
+    generation++;
+    return true;
+  }
+
+  /** Returns the current generation. */
+  int getGeneration() {
+    return generation;
+  }
+
+  /** Allows the generation to be advanced again, in the next response. */
+  void endResponse() {
+    advanced = false;
+  }
+
+  /** Marks the model out of sync, because the client-side terminal has been discarded. */
+  void reset() {
+    synced = false;
+    // the input of the new client-side terminal is numbered from zero
+    reportedInput = 0;
+    keyInput = -1;
+  }
+
+  private boolean isSynced() {
+    return synced && keyInput >= 0 && reportedInput >= keyInput;
+  }
+
+  /** Starts handling a key event, which follows the user input with the given sequence number. */
+  void beginKeyEvent(int inputSequence) {
+    keyInput = inputSequence;
+  }
+
+  /** Ends handling a key event. */
+  void endKeyEvent() {
+    keyInput = -1;
+  }
+
+  /** Handles a report from the client. Reports from an outdated generation are ignored. */
+  void update(int generation, int inputSequence, String line, String selection) {
+    if (generation == this.generation) {
+      reportedInput = inputSequence;
+      this.line = line;
+      this.selection = selection;
+      synced = true;
+    }
+  }
+
+  /** Returns the text in the current line, or {@code null} if the model is out of sync. */
+  String getLine() {
+    return isSynced() ? line : null;
+  }
+
+  /** Returns the selected text, or {@code null} if the model is out of sync. */
+  String getSelection() {
+    return isSynced() ? selection : null;
+  }
+
+}
@@ -0,0 +1,270 @@
+/*-
+ * #%L
+ * XTerm Console Addon
+ * %%
+ * Copyright (C) 2020 - 2026 Flowing Code
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.flowingcode.vaadin.addons.xterm;
+
+import com.vaadin.flow.component.ComponentUtil;
+import com.vaadin.flow.component.UI;
+import com.vaadin.flow.component.UIDetachedException;
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * A group of rows in the output of a terminal that can be updated in place, such as a progress bar
+ * or the status of a running job. The region is anchored to a marker in the client-side terminal,
+ * so that it can be updated after it has scrolled, as long as it is still on the screen.
+ * <p>
+ * Updates are coalesced: the rows that change within the same interval are sent together, at most
+ * {@linkplain #setMaxUpdateRate(double) a number of times per second}, and only the rows that
+ * changed are rewritten. Updates that are delayed by the rate limit are delivered through
+ * {@link UI#access(com.vaadin.flow.server.Command)}, which requires server push to be enabled.
+ * </p>
+ * <p>
+ * The rows of a region are written with automatic wrapping disabled, so that text longer than the
+ * terminal is clipped. Updates to rows that are no longer on the screen (either because they went
+ * into the scrollback, or because the alternate buffer is active) are discarded. When the terminal
+ * is detached, its regions are {@linkplain #isRemoved() removed}.
+ * </p>
+ *
+ * <pre>{@code
+ * LiveRegion progress = LiveRegion.create(xterm, "download", 1);
+ * progress.setLine(0, "[#####     ] 50%");
+ * }</pre>
+ */
+@SuppressWarnings("serial")
+public final class LiveRegion implements Serializable {
+
+  private static final double DEFAULT_MAX_UPDATE_RATE = 10;
+
+  /** The live regions of a terminal. */
+  private static final class Registry implements Serializable {
+
+    private final Map<String, LiveRegion> regions = new LinkedHashMap<>();
+
+    private int nextId;
+
+    static Registry of(XTermBase xterm, boolean create) {
+      Registry registry = ComponentUtil.getData(xterm, Registry.class);
+      if (registry == null && create) {
+        Registry newRegistry = new Registry();
+        xterm.addDetachListener(ev -> newRegistry.removeAll());
+        ComponentUtil.setData(xterm, Registry.class, newRegistry);
+        registry = newRegistry;
+      }
+      return registry;
+    }
+
+    private void removeAll() {
+      // the markers are gone with the client-side terminal
+      regions.values().forEach(region -> region.removed = true);
+      regions.clear();
+    }
+  }
+
+  private final XTermBase xterm;
+
+  private final Registry registry;
+
+  private final String name;
+
+  private final int id;
+
+  private final String[] lines;
+
+  private final BitSet dirty;
+
+  private long minIntervalNanos = (long) (1e9 / DEFAULT_MAX_UPDATE_RATE);
+
+  private long lastFlush;
+
+  private boolean flushScheduled;
+
+  private boolean removed;
+
+  private LiveRegion(XTermBase xterm, Registry registry, String name, int rows) {
+    this.xterm = xterm;
+    this.registry = registry;
+    this.name = name;
+    id = registry.nextId++;
+    lines = new String[rows];
+    Arrays.fill(lines, "");
+    dirty = new BitSet(rows);
+    lastFlush = System.nanoTime() - minIntervalNanos;
+  }
+
+  /**
+   * Creates a new region of blank rows, starting at the beginning of the current line (or of the
+   * next line, if the cursor is not at the first column), and moves the cursor past it.
+   *
+   * @param xterm the terminal
+   * @param name a name that identifies the region within the terminal
+   * @param rows the number of rows of the region
+   * @throws IllegalArgumentException if {@code rows} is not positive, or if the terminal already
+   *         has a region with the given name
+   */
+  public static LiveRegion create(XTermBase xterm, String name, int rows) {
+    Objects.requireNonNull(name);
+    if (rows <= 0) {
+      throw new IllegalArgumentException("rows must be positive");
+    }
+    Registry registry = Registry.of(xterm, true);
+    if (registry.regions.containsKey(name)) {
+      throw new IllegalArgumentException("The terminal already has a region named " + name);
+    }
+    LiveRegion region = new LiveRegion(xterm, registry, name, rows);
+    registry.regions.put(name, region);
+    xterm.writeControl("\033[<" + region.id + "M" + "\r\n".repeat(rows));
+    return region;
+  }
+
+  /** Returns the region of the given terminal with the given name. */
+  public static Optional<LiveRegion> find(XTermBase xterm, String name) {
+    return Optional.ofNullable(Registry.of(xterm, false)).map(r -> r.regions.get(name));
+  }
+
+  /** Returns the names of the regions of the given terminal. */
+  public static Set<String> getNames(XTermBase xterm) {
+    Registry registry = Registry.of(xterm, false);
+    return registry == null ? Collections.emptySet()
+        : Collections.unmodifiableSet(registry.regions.keySet());
+  }
+
+  /** Returns the name of this region. */
+  public String getName() {
+    return name;
+  }
+
+  /** Returns the number of rows of this region. */
+  public int getRowCount() {
+    return lines.length;
+  }
+
+  /** Returns the text of a row. */
+  public String getLine(int row) {
+    return lines[Objects.checkIndex(row, lines.length)];
+  }
+
+  /**
+   * Sets the maximum number of times per second that the region is updated. The default is 10.
+   *
+   * @throws IllegalArgumentException if {@code updatesPerSecond} is not positive
+   */
+  public void setMaxUpdateRate(double updatesPerSecond) {
+    if (!(updatesPerSecond > 0)) {
+      throw new IllegalArgumentException("updatesPerSecond must be positive");
+    }
+    minIntervalNanos = (long) (1e9 / updatesPerSecond);
+  }
+
+  /**
+   * Sets the text of a row. The text may contain SGR sequences, which are reset at the end of the
+   * row, but it must not contain line breaks. Nothing is sent if the text did not change.
+   *
+   * @throws IllegalArgumentException if {@code text} contains a line break
+   * @throws IndexOutOfBoundsException if {@code row} is outside the region
+   */
+  public void setLine(int row, String text) {
+    Objects.checkIndex(row, lines.length);
+    if (text.indexOf('\n') >= 0 || text.indexOf('\r') >= 0) {
+      throw new IllegalArgumentException("text must not contain line breaks");
+    }
+    if (!removed && !text.equals(lines[row])) {
+      lines[row] = text;
+      dirty.set(row);
+      scheduleFlush();
+    }
+  }
+
+  /**
+   * Sets the text of the rows, starting from the first one. The rows after the given lines are not
+   * changed.
+   *
+   * @see #setLine(int, String)
+   */
+  public void setLines(String... lines) {
+    for (int i = 0; i < lines.length; i++) {
+      setLine(i, lines[i]);
+    }
+  }
+
+  /**
+   * Stops tracking this region. The pending updates are sent, and the rows keep their last
+   * content.
+   */
+  public void remove() {
+    if (!removed) {
+      flush();
+      removed = true;
+      registry.regions.remove(name);
+      xterm.writeControl("\033[<" + id + "Q");
+    }
+  }
+
+  /** Returns whether this region has been removed. */
+  public boolean isRemoved() {
+    return removed;
+  }
+
+  private void scheduleFlush() {
+    if (flushScheduled) {
+      return;
+    }
+    flushScheduled = true;
+    xterm.getElement().getNode().runWhenAttached(ui -> {
+      long delay = lastFlush + minIntervalNanos - System.nanoTime();
+      if (delay <= 0) {
+        // rows changed in the same round-trip are sent together
+        ui.beforeClientResponse(xterm, context -> flush());
+      } else {
+        TerminalScheduler.schedule(() -> {
+          try {
+            ui.access(this::flush);
+          } catch (UIDetachedException e) {
+            // the terminal is gone
+          }
+        }, (delay + 999_999) / 1_000_000);
+      }
+    });
+  }
+
+  /** Rewrites the rows that changed since the last update. */
+  private void flush() {
+    flushScheduled = false;
+    if (removed || dirty.isEmpty()) {
+      return;
+    }
+    lastFlush = System.nanoTime();
+    StringBuilder sb = new StringBuilder();
+    for (int row = dirty.nextSetBit(0); row >= 0; row = dirty.nextSetBit(row + 1)) {
+      // jump to the row and erase it, write the text, and return to the previous position
+      sb.append("\033[<").append(id).append(';').append(row).append('J');
+      sb.append(lines[row]).append("\033[<U");
+    }
+    dirty.clear();
+    xterm.writeControl(sb.toString());
+  }
+
+}
@@ -0,0 +1,137 @@
+/*-
+ * #%L
+ * XTerm Console Addon
+ * %%
+ * Copyright (C) 2020 - 2026 Flowing Code
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.flowingcode.vaadin.addons.xterm;
+
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Accumulates consecutive writes to a terminal, so that they can be delivered to the client as a
+ * single {@code terminal.write} payload. The accumulator holds either text or binary data: callers
+ * must drain it, or convert it {@linkplain #toBinary() to binary}, before switching from one kind
+ * of payload to the other.
+ */
+@SuppressWarnings("serial")
+final class OutputAccumulator implements Serializable {
+
+  /** Buffers larger than this are released after draining. */
+  private static final int MAX_RETAINED_CAPACITY = 64 * 1024;
+
+  private final StringBuilder buffer = new StringBuilder();
+
+  private byte[] bytes = new byte[0];
+
+  private int byteCount;
+
+  private int pendingWrites;
+
+  private long mergedWrites;
+
+  /** Appends {@code data} to the pending text payload. */
+  void append(String data) {
+    if (byteCount > 0) {
+      throw new IllegalStateException("Binary payload pending");
+    }
+    buffer.append(data);
+    pendingWrites++;
+  }
+
+  /** Appends {@code len} bytes from {@code data} to the pending binary payload. */
+  void append(byte[] data, int off, int len) {
+    if (buffer.length() > 0) {
+      throw new IllegalStateException("Text payload pending");
+    }
+    if (byteCount + len > bytes.length) {
+      bytes = Arrays.copyOf(bytes, Math.max(byteCount + len, bytes.length * 2));
+    }
+    System.arraycopy(data, off, bytes, byteCount, len);
+    byteCount += len;
+    pendingWrites++;
+  }
+
+  /**
+   * Converts the pending text payload (if any) into a binary payload, so that binary data can be
+   * appended to it.
+   */
+  void toBinary() {
+    if (buffer.length() > 0) {
+      byte[] data = buffer.toString().getBytes(StandardCharsets.UTF_8);
+      buffer.setLength(0);
+      pendingWrites--;
+      append(data, 0, data.length);
+    }
+  }
+
+  /** Returns whether there is no pending payload. */
+  boolean isEmpty() {
+    return pendingWrites == 0;
+  }
+
+  /** Returns whether the pending payload is binary. */
+  boolean isBinary() {
+    return byteCount > 0;
+  }
+
+  /**
+   * Returns the pending text payload and resets the accumulator, or {@code null} if there is no
+   * pending text payload.
+   */
+  String drain() {
+    if (pendingWrites == 0 || byteCount > 0) {
+      return null;
+    }
+    String data = buffer.toString();
+    reset();
+    return data;
+  }
+
+  /**
+   * Returns the pending binary payload and resets the accumulator, or {@code null} if there is no
+   * pending binary payload.
+   */
+  byte[] drainBytes() {
+    if (byteCount == 0) {
+      return null;
+    }
+    byte[] data = Arrays.copyOf(bytes, byteCount);
+    reset();
+    return data;
+  }
+
+  private void reset() {
+    mergedWrites += pendingWrites - 1;
+    pendingWrites = 0;
+    byteCount = 0;
+    buffer.setLength(0);
+    if (buffer.capacity() > MAX_RETAINED_CAPACITY) {
+      buffer.trimToSize();
+    }
+    if (bytes.length > MAX_RETAINED_CAPACITY) {
+      bytes = new byte[0];
+    }
+  }
+
+  /** Returns the number of writes that were merged into a preceding payload. */
+  long getMergedWrites() {
+    return mergedWrites;
+  }
+
+}
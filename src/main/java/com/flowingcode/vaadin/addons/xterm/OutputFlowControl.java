@@ -0,0 +1,175 @@
+/*-
+ * #%L
+ * XTerm Console Addon
+ * %%
+ * Copyright (C) 2020 - 2026 Flowing Code
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.flowingcode.vaadin.addons.xterm;
+
+import com.vaadin.flow.shared.Registration;
+import java.io.InterruptedIOException;
+import java.io.Serializable;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Tracks the number of bytes that have been handed to a terminal but not yet acknowledged by the
+ * client, and parks producers while that number exceeds the high-water mark.
+ * <p>
+ * Producers are parked on a {@link Condition} rather than on a monitor, so that waiting does not
+ * pin the carrier thread of a virtual thread.
+ * </p>
+ */
+@SuppressWarnings("serial")
+final class OutputFlowControl implements Serializable {
+
+  private final ReentrantLock lock = new ReentrantLock();
+
+  private final Condition drained = lock.newCondition();
+
+  private int highWaterMark;
+
+  private long inFlight;
+
+  private transient volatile List<Runnable> releaseListeners;
+
+  OutputFlowControl(int highWaterMark) {
+    this.highWaterMark = highWaterMark;
+  }
+
+  void setHighWaterMark(int highWaterMark) {
+    lock.lock();
+    try {
+      this.highWaterMark = highWaterMark;
+      drained.signalAll();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  int getHighWaterMark() {
+    lock.lock();
+    try {
+      return highWaterMark;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Reserves {@code n} bytes. If {@code mayBlock} is {@code true}, the caller is parked until the
+   * reservation fits below the high-water mark. A reservation that is larger than the high-water
+   * mark is admitted as soon as nothing else is in flight.
+   *
+   * @throws InterruptedIOException if the current thread is interrupted while waiting
+   */
+  void acquire(int n, boolean mayBlock) throws InterruptedIOException {
+    lock.lock();
+    try {
+      while (mayBlock && inFlight > 0 && inFlight + n > highWaterMark) {
+        drained.await();
+      }
+      inFlight += n;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /** Reserves {@code n} bytes without parking. */
+  void reserve(int n) {
+    lock.lock();
+    try {
+      inFlight += n;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /** Releases {@code n} bytes, wakes up any parked producer and notifies the release listeners. */
+  void release(long n) {
+    lock.lock();
+    try {
+      inFlight = Math.max(0, inFlight - n);
+      drained.signalAll();
+    } finally {
+      lock.unlock();
+    }
+    List<Runnable> listeners = releaseListeners;
+    if (listeners != null) {
+      listeners.forEach(Runnable::run);
+    }
+  }
+
+  /**
+   * Adds a listener that is notified after bytes are released. Listeners are not serialized.
+   *
+   * @return a registration for removing the listener
+   */
+  Registration addReleaseListener(Runnable listener) {
+    List<Runnable> listeners;
+    lock.lock();
+    try {
+      if (releaseListeners == null) {
+        releaseListeners = new CopyOnWriteArrayList<>();
+      }
+      listeners = releaseListeners;
+    } finally {
+      lock.unlock();
+    }
+    listeners.add(listener);
+    return () -> listeners.remove(listener);
+  }
+
+  /** Returns the number of release listeners. */
+  int getReleaseListenerCount() {
+    List<Runnable> listeners = releaseListeners;
+    return listeners == null ? 0 : listeners.size();
+  }
+
+  /** Returns whether {@code n} more bytes can be reserved without parking. */
+  boolean hasCapacity(int n) {
+    lock.lock();
+    try {
+      return inFlight == 0 || inFlight + n <= highWaterMark;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Forgets about every byte in flight, and wakes up any parked producer. This is called when the
+   * client-side terminal is discarded, since its pending acknowledgements will never arrive.
+   */
+  void reset() {
+    release(Long.MAX_VALUE);
+  }
+
+  /** Returns the number of bytes that have not been acknowledged yet. */
+  long getInFlight() {
+    lock.lock();
+    try {
+      return inFlight;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+}
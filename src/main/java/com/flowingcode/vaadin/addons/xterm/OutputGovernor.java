@@ -0,0 +1,401 @@
+/*-
+ * #%L
+ * XTerm Console Addon
+ * %%
+ * Copyright (C) 2020 - 2026 Flowing Code
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.flowingcode.vaadin.addons.xterm;
+
+import java.io.InterruptedIOException;
+import java.io.Serializable;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Objects;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/**
+ * Limits the rate of output of a terminal, with a token bucket for characters per second and
+ * another one for lines per second. Each bucket holds up to one second worth of tokens.
+ * <p>
+ * A decision is made at the start of each line: if both buckets have tokens, the whole line is
+ * admitted; otherwise the {@link Policy} determines what happens to it. Characters are counted as
+ * UTF-16 units, which for ASCII output is the number of bytes.
+ * </p>
+ *
+ * @see XTermBase#setOutputGovernor(OutputGovernor)
+ */
+@SuppressWarnings("serial")
+public class OutputGovernor implements Serializable {
+
+  /**
+   * What to do with output that exceeds the budget.
+   * <p>
+   * {@link #DROP}, {@link #SAMPLE} and {@link #HEAD_TAIL} apply to every write to the terminal,
+   * including interactive output such as the echo of user input, which shares the budget with bulk
+   * output and can be dropped as well.
+   * </p>
+   */
+  public enum Policy {
+    /**
+     * Park the producer until the budget allows the output. Only producers that write through
+     * {@link XTermBase#openOutputStream()}, {@link XTermBase#openWriter()} or
+     * {@link XTermBase#getTerminalWriter()} are parked; other writes are not throttled.
+     */
+    BLOCK,
+    /** Drop the lines, and write a "[N lines suppressed]" marker when output resumes. */
+    DROP,
+    /** Keep every Nth line, and drop the others. */
+    SAMPLE,
+    /**
+     * Keep the first lines (as long as the budget allows) and the last lines of a burst, replacing
+     * the lines in between with a "[N lines suppressed]" marker.
+     */
+    HEAD_TAIL
+  }
+
+  private static final int MAX_TAIL_LINE_LENGTH = 1024;
+
+  private final ReentrantLock lock = new ReentrantLock();
+
+  private final double charsPerSecond;
+
+  private final double linesPerSecond;
+
+  private final Policy policy;
+
+  private int sampleRate = 10;
+
+  private int tailSize = 10;
+
+  private double charTokens;
+
+  private double lineTokens;
+
+  private long lastRefill = System.nanoTime();
+
+  private boolean lineStart = true;
+
+  private boolean lineSuppressed;
+
+  private boolean lineCharged;
+
+  private long sampleCounter;
+
+  private long pendingLines;
+
+  private final Deque<String> tail = new ArrayDeque<>();
+
+  private final StringBuilder tailLine = new StringBuilder();
+
+  private long suppressedLines;
+
+  private long suppressedChars;
+
+  private long throttleCount;
+
+  private long blockedNanos;
+
+  /**
+   * Creates a new output governor.
+   *
+   * @param charsPerSecond the maximum rate of characters, or {@code 0} for no limit
+   * @param linesPerSecond the maximum rate of lines, or {@code 0} for no limit
+   * @param policy what to do with output that exceeds the budget
+   */
+  public OutputGovernor(double charsPerSecond, double linesPerSecond, Policy policy) {
+    if (charsPerSecond < 0 || linesPerSecond < 0) {
+      throw new IllegalArgumentException("rates must not be negative");
+    }
+    this.charsPerSecond = charsPerSecond > 0 ? charsPerSecond : Double.POSITIVE_INFINITY;
+    this.linesPerSecond = linesPerSecond > 0 ? linesPerSecond : Double.POSITIVE_INFINITY;
+    this.policy = Objects.requireNonNull(policy);
+    charTokens = this.charsPerSecond;
+    lineTokens = this.linesPerSecond;
+  }
+
+  /** Returns the policy of this governor. */
+  public Policy getPolicy() {
+    return policy;
+  }
+
+  /** Sets which lines are kept by the {@link Policy#SAMPLE} policy. The default is 10. */
+  public void setSampleRate(int n) {
+    if (n <= 0) {
+      throw new IllegalArgumentException("n must be positive");
+    }
+    lock.lock();
+    try {
+      sampleRate = n;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /** Sets how many lines are kept by the {@link Policy#HEAD_TAIL} policy. The default is 10. */
+  public void setTailSize(int n) {
+    if (n < 0) {
+      throw new IllegalArgumentException("n must not be negative");
+    }
+    lock.lock();
+    try {
+      tailSize = n;
+      while (tail.size() > n) {
+        tail.removeFirst();
+      }
+      if (n == 0) {
+        tailLine.setLength(0);
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /** Returns the number of lines that were dropped. */
+  public long getSuppressedLineCount() {
+    return locked(() -> suppressedLines);
+  }
+
+  /** Returns the number of characters that were dropped. */
+  public long getSuppressedCharCount() {
+    return locked(() -> suppressedChars);
+  }
+
+  /** Returns how many times output went over budget. */
+  public long getThrottleCount() {
+    return locked(() -> throttleCount);
+  }
+
+  /** Returns the total time that producers have been parked by the {@link Policy#BLOCK} policy. */
+  public Duration getBlockedTime() {
+    return Duration.ofNanos(locked(() -> blockedNanos));
+  }
+
+  private long locked(LongSupplier supplier) {
+    lock.lock();
+    try {
+      return supplier.getAsLong();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private void refill() {
+    long now = System.nanoTime();
+    double elapsed = (now - lastRefill) / 1e9;
+    lastRefill = now;
+    charTokens = refill(charTokens, charsPerSecond, elapsed);
+    lineTokens = refill(lineTokens, linesPerSecond, elapsed);
+  }
+
+  private static double refill(double tokens, double rate, double elapsed) {
+    return Double.isInfinite(rate) ? rate : Math.min(rate, tokens + elapsed * rate);
+  }
+
+  /** Returns the number of seconds until the bucket has tokens again. */
+  private static double deficit(double tokens, double rate) {
+    return tokens > 0 ? 0 : -tokens / rate;
+  }
+
+  private boolean hasTokens() {
+    return charTokens > 0 && lineTokens > 0;
+  }
+
+  /**
+   * Parks the current thread until the budget allows {@code chars} characters in {@code lines}
+   * lines. This method returns immediately unless the policy is {@link Policy#BLOCK}.
+   *
+   * @throws InterruptedIOException if the current thread is interrupted while parked
+   */
+  void acquire(int chars, int lines) throws InterruptedIOException {
+    if (policy != Policy.BLOCK) {
+      return;
+    }
+
+    boolean throttled = false;
+    while (true) {
+      long waitNanos;
+      lock.lock();
+      try {
+        refill();
+        if (hasTokens()) {
+          // tokens may go negative, so that a large write is paid by the next ones
+          charTokens -= chars;
+          lineTokens -= lines;
+          return;
+        }
+        if (!throttled) {
+          throttled = true;
+          throttleCount++;
+        }
+        waitNanos = (long) (1e9 * Math.max(
+            deficit(charTokens, charsPerSecond), deficit(lineTokens, linesPerSecond))) + 1;
+      } finally {
+        lock.unlock();
+      }
+
+      // parkNanos may return early (or late), so the blocked time is measured
+      long parkedAt = System.nanoTime();
+      LockSupport.parkNanos(this, waitNanos);
+      long parkedNanos = System.nanoTime() - parkedAt;
+      locked(() -> blockedNanos += parkedNanos);
+      if (Thread.interrupted()) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException();
+      }
+    }
+  }
+
+  /** Returns the text from {@code data} that is admitted by the budget. */
+  String filter(String data) {
+    if (policy == Policy.BLOCK) {
+      return data;
+    }
+
+    lock.lock();
+    try {
+      refill();
+      StringBuilder out = new StringBuilder();
+      int pos = 0;
+      while (pos < data.length()) {
+        int nl = data.indexOf('\n', pos);
+        int end = nl < 0 ? data.length() : nl + 1;
+
+        if (lineStart) {
+          // sampled lines are not charged, so that the budget recovers while sampling
+          lineCharged = hasTokens();
+          lineSuppressed = !lineCharged && !admitLine();
+          if (!lineSuppressed) {
+            appendSummary(out);
+          }
+        }
+
+        if (lineSuppressed) {
+          suppressedChars += end - pos;
+          if (policy == Policy.HEAD_TAIL && tailSize > 0) {
+            int n = Math.min(end - pos, MAX_TAIL_LINE_LENGTH - tailLine.length());
+            tailLine.append(data, pos, pos + Math.max(0, n));
+          }
+        } else {
+          out.append(data, pos, end);
+        }
+        if (lineCharged) {
+          charTokens -= end - pos;
+        }
+
+        lineStart = nl >= 0;
+        if (lineStart) {
+          if (lineCharged) {
+            lineTokens--;
+          }
+          if (lineSuppressed) {
+            suppressedLines++;
+            pendingLines++;
+            pushTailLine();
+          }
+        }
+        pos = end;
+      }
+      return out.toString();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private boolean admitLine() {
+    if (pendingLines == 0) {
+      throttleCount++;
+    }
+    return policy == Policy.SAMPLE && ++sampleCounter % sampleRate == 0;
+  }
+
+  private void pushTailLine() {
+    if (policy == Policy.HEAD_TAIL && tailSize > 0) {
+      if (tail.size() == tailSize) {
+        tail.removeFirst();
+      }
+      if (tailLine.length() == 0 || tailLine.charAt(tailLine.length() - 1) != '\n') {
+        // the line was truncated
+        tailLine.append("\r\n");
+      }
+      tail.addLast(tailLine.toString());
+      tailLine.setLength(0);
+    }
+  }
+
+  private void appendSummary(StringBuilder out) {
+    if (pendingLines > 0) {
+      long n = pendingLines - tail.size();
+      if (n > 0) {
+        out.append("[").append(n).append(n == 1 ? " line" : " lines").append(" suppressed]\r\n");
+      }
+      tail.forEach(out::append);
+      tail.clear();
+      pendingLines = 0;
+    }
+  }
+
+  /** Returns the number of line feeds in {@code data}. */
+  static int countLines(byte[] data) {
+    int n = 0;
+    for (byte b : data) {
+      if (b == '\n') {
+        n++;
+      }
+    }
+    return n;
+  }
+
+  /** Returns the number of line feeds in {@code data}. */
+  static int countLines(String data) {
+    int n = 0;
+    for (int i = data.indexOf('\n'); i >= 0; i = data.indexOf('\n', i + 1)) {
+      n++;
+    }
+    return n;
+  }
+
+  /** Returns whether some lines have been dropped since the last marker was written. */
+  boolean hasPendingSummary() {
+    lock.lock();
+    try {
+      return pendingLines > 0;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Returns the marker (and, for the {@link Policy#HEAD_TAIL} policy, the last lines) for the lines
+   * dropped since the last marker was written. Nothing is returned while a dropped line is
+   * incomplete.
+   */
+  String summarize() {
+    lock.lock();
+    try {
+      StringBuilder out = new StringBuilder();
+      if (lineStart) {
+        appendSummary(out);
+      }
+      return out.toString();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+}
@@ -0,0 +1,179 @@
+/*-
+ * #%L
+ * XTerm Console Addon
+ * %%
+ * Copyright (C) 2020 - 2026 Flowing Code
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.flowingcode.vaadin.addons.xterm;
+
+import com.vaadin.flow.component.ComponentUtil;
+import com.vaadin.flow.component.UI;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+/**
+ * Shares the bulk output bandwidth of a UI among its terminals. Every terminal registers with the
+ * scheduler of its UI while attached. Once per response, the scheduler hands out the bulk output
+ * of the registered terminals, up to a {@linkplain #setFlushBudget(int) budget}, by deficit round
+ * robin: in each round, every terminal with pending bulk output is granted a
+ * {@linkplain #setQuantum(int) quantum} of bytes, and any unused part of its grant carries over to
+ * the next round. This way, a noisy terminal cannot starve the other terminals in the same UI.
+ * <p>
+ * The queue depth and latency of each terminal are available through
+ * {@link XTermBase#getQueuedBulkOutput()} and {@link XTermBase#getBulkOutputLatency()}.
+ * </p>
+ *
+ * @see XTermBase#writeBulk(String)
+ */
+@SuppressWarnings("serial")
+public final class OutputScheduler implements Serializable {
+
+  private static final class Entry implements Serializable {
+    private final XTermBase xterm;
+    private long deficit;
+
+    Entry(XTermBase xterm) {
+      this.xterm = xterm;
+    }
+  }
+
+  private final UI ui;
+
+  private final List<Entry> entries = new ArrayList<>();
+
+  private int next;
+
+  private int quantum = BulkOutputQueue.CHUNK_SIZE;
+
+  private int flushBudget = 256 * 1024;
+
+  private boolean flushScheduled;
+
+  private OutputScheduler(UI ui) {
+    this.ui = ui;
+  }
+
+  /** Returns the output scheduler of the given UI. */
+  public static OutputScheduler get(UI ui) {
+    OutputScheduler scheduler = ComponentUtil.getData(ui, OutputScheduler.class);
+    if (scheduler == null) {
+      scheduler = new OutputScheduler(ui);
+      ComponentUtil.setData(ui, OutputScheduler.class, scheduler);
+    }
+    return scheduler;
+  }
+
+  /**
+   * Sets the number of bytes granted to each terminal in each round. The default is 16 KiB.
+   *
+   * @throws IllegalArgumentException if {@code quantum} is not positive
+   */
+  public void setQuantum(int quantum) {
+    if (quantum <= 0) {
+      throw new IllegalArgumentException("quantum must be positive");
+    }
+    this.quantum = quantum;
+  }
+
+  /** Returns the number of bytes granted to each terminal in each round. */
+  public int getQuantum() {
+    return quantum;
+  }
+
+  /**
+   * Sets the maximum number of bytes of bulk output sent in a single response, across all the
+   * terminals of the UI. The default is 256 KiB.
+   *
+   * @throws IllegalArgumentException if {@code flushBudget} is not positive
+   */
+  public void setFlushBudget(int flushBudget) {
+    if (flushBudget <= 0) {
+      throw new IllegalArgumentException("flushBudget must be positive");
+    }
+    this.flushBudget = flushBudget;
+  }
+
+  /** Returns the maximum number of bytes of bulk output sent in a single response. */
+  public int getFlushBudget() {
+    return flushBudget;
+  }
+
+  /** Returns the terminals registered with this scheduler. */
+  public List<XTermBase> getTerminals() {
+    return Collections.unmodifiableList(
+        entries.stream().map(entry -> entry.xterm).collect(Collectors.toList()));
+  }
+
+  /** Returns the total number of bytes of bulk output queued by the registered terminals. */
+  public long getQueuedOutput() {
+    return entries.stream().mapToLong(entry -> entry.xterm.getQueuedBulkOutput()).sum();
+  }
+
+  void register(XTermBase xterm) {
+    Objects.requireNonNull(xterm);
+    if (entries.stream().noneMatch(entry -> entry.xterm == xterm)) {
+      entries.add(new Entry(xterm));
+    }
+  }
+
+  void unregister(XTermBase xterm) {
+    entries.removeIf(entry -> entry.xterm == xterm);
+  }
+
+  /** Requests that the bulk output of the registered terminals is sent with the next response. */
+  void requestFlush() {
+    if (!flushScheduled) {
+      flushScheduled = true;
+      ui.beforeClientResponse(ui, context -> {
+        flushScheduled = false;
+        flush();
+      });
+    }
+  }
+
+  private void flush() {
+    int size = entries.size();
+    long budget = flushBudget;
+    boolean more = true;
+    while (budget > 0 && more) {
+      // keep going while some grant was used, or while some grant can still grow within the budget
+      more = false;
+      for (int i = 0; i < size && budget > 0; i++) {
+        Entry entry = entries.get((next + i) % size);
+        if (!entry.xterm.hasSendableBulkOutput()) {
+          entry.deficit = 0;
+          continue;
+        }
+        entry.deficit += quantum;
+        int sent = entry.xterm.sendBulkOutput((int) Math.min(entry.deficit, budget));
+        entry.deficit -= sent;
+        budget -= sent;
+        if (!entry.xterm.hasSendableBulkOutput()) {
+          entry.deficit = 0;
+        } else {
+          more |= sent > 0 || entry.deficit < budget;
+        }
+      }
+    }
+    // start the next flush with another terminal
+    next = size > 0 ? (next + 1) % size : 0;
+  }
+
+}
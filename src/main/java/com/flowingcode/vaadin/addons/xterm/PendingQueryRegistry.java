@@ -0,0 +1,130 @@
+/*-
+ * #%L
+ * XTerm Console Addon
+ * %%
+ * Copyright (C) 2020 - 2026 Flowing Code
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.flowingcode.vaadin.addons.xterm;
+
+import com.vaadin.flow.component.UI;
+import com.vaadin.flow.component.UIDetachedException;
+import elemental.json.JsonValue;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Keeps track of the queries of a terminal that are waiting for the client, so that identical
+ * queries can share a round-trip, and so that queries that will never be answered (because the
+ * client went away) are completed and released instead of staying reachable from the session.
+ * <p>
+ * A query that is not answered within the timeout completes exceptionally with a
+ * {@link TimeoutException}. {@link #cancelAll()} cancels every pending query. This class is not
+ * thread-safe: it is accessed while holding the session lock.
+ * </p>
+ */
+final class PendingQueryRegistry {
+
+  private static final class PendingQuery {
+    final long sequence;
+    final CompletableFuture<JsonValue> result;
+    ScheduledFuture<?> timeout;
+
+    PendingQuery(long sequence, CompletableFuture<JsonValue> result) {
+      this.sequence = sequence;
+      this.result = result;
+    }
+  }
+
+  private final Map<String, List<PendingQuery>> queries = new HashMap<>();
+
+  private int size;
+
+  /**
+   * Returns the result of a pending query with the given expression that was sent at the given
+   * command sequence, or {@code null} if there is none.
+   */
+  CompletableFuture<JsonValue> get(String expression, long sequence) {
+    if (expression == null) {
+      return null;
+    }
+    for (PendingQuery query : queries.getOrDefault(expression, List.of())) {
+      if (query.sequence == sequence) {
+        return query.result;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Registers a pending query. The query is removed from the registry when {@code result}
+   * completes.
+   *
+   * @param expression the expression of the query, or {@code null} if the query cannot be shared
+   * @param ui the UI used for completing the query when it times out
+   * @param timeout the timeout, or {@code null} for no timeout
+   */
+  void register(String expression, long sequence, CompletableFuture<JsonValue> result, UI ui,
+      Duration timeout) {
+    PendingQuery query = new PendingQuery(sequence, result);
+    queries.computeIfAbsent(expression, key -> new ArrayList<>()).add(query);
+    size++;
+
+    if (timeout != null && ui != null) {
+      query.timeout = TerminalScheduler.schedule(() -> {
+        try {
+          ui.access(() -> result.completeExceptionally(
+              new TimeoutException("The client did not answer within " + timeout)));
+        } catch (UIDetachedException e) {
+          // the query was cancelled when the terminal was detached
+        }
+      }, timeout.toMillis());
+    }
+
+    result.whenComplete((json, error) -> remove(expression, query));
+  }
+
+  private void remove(String expression, PendingQuery query) {
+    List<PendingQuery> list = queries.get(expression);
+    if (list != null && list.remove(query)) {
+      size--;
+      if (list.isEmpty()) {
+        queries.remove(expression);
+      }
+      if (query.timeout != null) {
+        query.timeout.cancel(false);
+      }
+    }
+  }
+
+  /** Cancels every pending query. */
+  void cancelAll() {
+    List<PendingQuery> pending = new ArrayList<>();
+    queries.values().forEach(pending::addAll);
+    pending.forEach(query -> query.result.cancel(false));
+  }
+
+  /** Returns the number of pending queries. */
+  int size() {
+    return size;
+  }
+
+}
@@ -20,6 +20,7 @@
 package com.flowingcode.vaadin.addons.xterm;
 
 import com.flowingcode.vaadin.addons.xterm.utils.StateMemoizer;
+import com.vaadin.flow.component.UI;
 import lombok.experimental.Delegate;
 
 import java.util.Objects;
@@ -54,6 +55,10 @@ public class PreserveStateAddon extends TerminalAddon
      * Remembers everything that was printed into the xterm and what the user typed in.
      */
     private final StringBuilder scrollbackBuffer = new StringBuilder();
+    /**
+     * Collapses repeated lines in the scrollback buffer, while the xterm collapses repeated lines.
+     */
+    private RepeatedLineCollapser scrollbackCollapser;
     /**
      * All commands are properly applied before the first attach; they're just
      * not preserved after subsequent detach/attach.
@@ -81,6 +86,8 @@ public class PreserveStateAddon extends TerminalAddon
     @Delegate
     private final ITerminalOptions optionsDelegate;
 
+    private transient TerminalWriter terminalWriter;
+
     public PreserveStateAddon(XTerm xterm) {
         super(xterm);
         this.xterm = Objects.requireNonNull(xterm);
@@ -88,18 +95,18 @@ public class PreserveStateAddon extends TerminalAddon
         optionsDelegate = (ITerminalOptions) optionsMemoizer.getProxy();
         xterm.addAttachListener(e -> {
             if (wasDetachedOnce) {
-                optionsMemoizer.apply();
-                xterm.write(scrollbackBuffer.toString());
-                xterm.writePrompt();
+                // restore the options, the scrollback and the prompt as a single client update
+                xterm.batch(() -> {
+                    optionsMemoizer.apply();
+                    xterm.write(getScrollbackBuffer());
+                    xterm.writePrompt();
+                });
             }
         });
         xterm.addDetachListener(e -> wasDetachedOnce = true);
         xterm.addLineListener(e -> {
-            // add the prompt to the scrollback buffer
-            scrollbackBuffer.append(xterm.getPrompt());
-            // also make sure that any user input ends up in the scrollback buffer.
-            scrollbackBuffer.append(e.getLine());
-            scrollbackBuffer.append('\n');
+            // add the prompt and the user input to the scrollback buffer
+            appendScrollback(xterm.getPrompt() + e.getLine() + '\n');
         });
     }
 
@@ -172,19 +179,19 @@ public class PreserveStateAddon extends TerminalAddon
     public void clear() {
         xterm.clear();
         scrollbackBuffer.delete(0, scrollbackBuffer.length());
+        scrollbackCollapser = null;
     }
 
     @Override
     public void write(String data) {
         xterm.write(data);
-        scrollbackBuffer.append(data);
+        appendScrollback(data);
     }
 
     @Override
     public void writeln(String data) {
         xterm.writeln(data);
-        scrollbackBuffer.append(data);
-        scrollbackBuffer.append('\n');
+        appendScrollback(data + '\n');
     }
 
     @Override
@@ -201,6 +208,7 @@ public class PreserveStateAddon extends TerminalAddon
     public void reset() {
         xterm.reset();
         scrollbackBuffer.delete(0, scrollbackBuffer.length());
+        scrollbackCollapser = null;
     }
 
     @Override
@@ -226,7 +234,48 @@ public class PreserveStateAddon extends TerminalAddon
         xterm.writePrompt();
     }
 
+    /**
+     * Returns a thread-safe writer that delivers text through this addon, so that it is also
+     * recorded in the scrollback buffer. The text is appended to the buffer in the UI thread.
+     *
+     * @throws IllegalStateException if the terminal is not attached to a UI
+     * @see XTermBase#getTerminalWriter()
+     */
+    public TerminalWriter getTerminalWriter() {
+        UI ui = xterm.getUI().orElseThrow(() -> new IllegalStateException("Terminal is not attached"));
+        if (terminalWriter == null || terminalWriter.getUI() != ui) {
+            terminalWriter = new TerminalWriter(ui, xterm, data -> {
+                xterm.writeBulk(data);
+                appendScrollback(data);
+            });
+        }
+        return terminalWriter;
+    }
+
+    private void appendScrollback(String data) {
+        if (xterm.isRepeatedLineCollapsingEnabled()) {
+            if (scrollbackCollapser == null) {
+                scrollbackCollapser = new RepeatedLineCollapser(false);
+            }
+            scrollbackBuffer.append(scrollbackCollapser.filter(data));
+        } else {
+            if (scrollbackCollapser != null) {
+                scrollbackBuffer.append(scrollbackCollapser.release());
+                scrollbackCollapser = null;
+            }
+            scrollbackBuffer.append(data);
+        }
+    }
+
+    /**
+     * Returns everything that was printed into the xterm and what the user typed in. If the xterm
+     * {@linkplain XTermBase#setRepeatedLineCollapsingEnabled(boolean) collapses repeated lines},
+     * they are collapsed in the scrollback buffer as well.
+     */
     public String getScrollbackBuffer() {
+        if (scrollbackCollapser != null) {
+            return scrollbackBuffer + scrollbackCollapser.getWithheld();
+        }
         return scrollbackBuffer.toString();
     }
 
@@ -0,0 +1,244 @@
+/*-
+ * #%L
+ * XTerm Console Addon
+ * %%
+ * Copyright (C) 2020 - 2026 Flowing Code
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.flowingcode.vaadin.addons.xterm;
+
+import java.io.Serializable;
+
+/**
+ * Collapses consecutive identical lines of output into a "[last line repeated N times]" counter.
+ * <p>
+ * Each line is compared with the previous one as it streams in, so that no copy of the line is
+ * allocated. While the line being written is a prefix of the previous one, its characters are
+ * withheld; they are emitted as soon as the line diverges, or when {@link #release()} is called.
+ * Empty lines, and lines longer than {@value #MAX_LINE_LENGTH} characters, are never collapsed.
+ * </p>
+ * <p>
+ * In place mode, the counter is written as a line of its own after the repeated one when the output
+ * is released, and rewritten by moving the cursor back to it on each release while the line keeps
+ * repeating, so that the cursor is never left on the counter line. Otherwise, the counter is
+ * written once, when the run of repeated lines ends.
+ * </p>
+ */
+@SuppressWarnings("serial")
+final class RepeatedLineCollapser implements Serializable {
+
+  static final int MAX_LINE_LENGTH = 4096;
+
+  private final boolean inPlace;
+
+  private StringBuilder previous = new StringBuilder();
+
+  private StringBuilder current = new StringBuilder();
+
+  private boolean lineStart = true;
+
+  private boolean matching;
+
+  private int matched;
+
+  private boolean tooLong;
+
+  private long repeats;
+
+  private boolean counterDirty;
+
+  /** Whether the counter of the current run has been written, in place mode. */
+  private boolean counterShown;
+
+  /** Whether some of the withheld output was written through the bulk lane. */
+  private boolean withheldBulk;
+
+  private long collapsedLines;
+
+  RepeatedLineCollapser(boolean inPlace) {
+    this.inPlace = inPlace;
+  }
+
+  /**
+   * Returns the output for {@code data}, with repeated lines collapsed, and records whether the
+   * output that remains withheld was written through the bulk lane.
+   */
+  String filter(String data, boolean bulk) {
+    String out = filter(data);
+    // if some output was emitted, the output that was withheld before has been emitted as well
+    withheldBulk = hasWithheld() && (bulk || withheldBulk && out.isEmpty());
+    return out;
+  }
+
+  /** Returns the output for {@code data}, with repeated lines collapsed. */
+  String filter(String data) {
+    StringBuilder out = new StringBuilder();
+    int pos = 0;
+    while (pos < data.length()) {
+      int nl = data.indexOf('\n', pos);
+      int end = nl < 0 ? data.length() : nl + 1;
+
+      if (lineStart) {
+        lineStart = false;
+        matching = previous.length() > 0;
+        matched = 0;
+        current.setLength(0);
+        tooLong = false;
+      }
+
+      int from = pos;
+      if (matching) {
+        while (from < end && matched < previous.length()
+            && data.charAt(from) == previous.charAt(matched)) {
+          from++;
+          matched++;
+        }
+        if (from < end) {
+          // the line diverges from the previous one
+          emitWithheld(out);
+        }
+      }
+
+      if (!matching) {
+        if (from < end) {
+          endRun(out);
+          out.append(data, from, end);
+          appendCurrent(data, from, end);
+        }
+        if (nl >= 0) {
+          endLine();
+        }
+      } else if (nl >= 0) {
+        // the whole previous line (which ends with the line feed) has been matched
+        repeats++;
+        collapsedLines++;
+        counterDirty = inPlace;
+        lineStart = true;
+        matching = false;
+      }
+      pos = end;
+    }
+    return out.toString();
+  }
+
+  /**
+   * Returns the withheld characters, which are no longer withheld afterwards. In place mode, the
+   * counter is brought up to date as well.
+   */
+  String release() {
+    StringBuilder out = new StringBuilder();
+    if (matching && matched > 0) {
+      emitWithheld(out);
+    } else if (!inPlace) {
+      endRun(out);
+    } else if (counterDirty) {
+      appendRunEnd(out);
+      counterDirty = false;
+      counterShown = true;
+    }
+    withheldBulk = false;
+    return out.toString();
+  }
+
+  /**
+   * Returns whether some of the output that {@link #release()} would return was written through
+   * the bulk lane.
+   */
+  boolean isWithheldBulk() {
+    return withheldBulk;
+  }
+
+  /** Returns whether some output is withheld until {@link #release()} is called. */
+  boolean hasWithheld() {
+    return matching && matched > 0 || counterDirty || !inPlace && repeats > 0;
+  }
+
+  /** Returns the output that {@link #release()} would return, without releasing it. */
+  String getWithheld() {
+    StringBuilder out = new StringBuilder();
+    if (repeats > 0 && (!inPlace || matching && matched > 0)) {
+      appendRunEnd(out);
+    }
+    if (matching) {
+      out.append(previous, 0, matched);
+    }
+    return out.toString();
+  }
+
+  /** Returns the number of lines that were collapsed. */
+  long getCollapsedLineCount() {
+    return collapsedLines;
+  }
+
+  private void emitWithheld(StringBuilder out) {
+    matching = false;
+    if (matched > 0) {
+      endRun(out);
+      out.append(previous, 0, matched);
+      appendCurrent(previous, 0, matched);
+    }
+  }
+
+  private void appendCurrent(CharSequence s, int start, int end) {
+    if (!tooLong) {
+      if (current.length() + end - start > MAX_LINE_LENGTH) {
+        tooLong = true;
+      } else {
+        current.append(s, start, end);
+      }
+    }
+  }
+
+  private void endLine() {
+    lineStart = true;
+    if (tooLong || isEmptyLine(current)) {
+      // runs of empty lines are not collapsed
+      previous.setLength(0);
+    } else {
+      StringBuilder line = current;
+      current = previous;
+      previous = line;
+    }
+  }
+
+  private static boolean isEmptyLine(CharSequence line) {
+    return line.length() == 1 || line.length() == 2 && line.charAt(0) == '\r';
+  }
+
+  private void endRun(StringBuilder out) {
+    if (repeats > 0) {
+      appendRunEnd(out);
+      repeats = 0;
+      counterDirty = false;
+      counterShown = false;
+    }
+  }
+
+  private void appendRunEnd(StringBuilder out) {
+    if (!inPlace || counterDirty) {
+      if (counterShown) {
+        // the cursor is at the start of the line after the counter
+        out.append("\033[F\033[2K");
+      }
+      appendCounter(out);
+      out.append("\r\n");
+    }
+  }
+
+  private void appendCounter(StringBuilder out) {
+    out.append("[last line repeated ").append(repeats).append(repeats == 1 ? " time]" : " times]");
+  }
+
+}
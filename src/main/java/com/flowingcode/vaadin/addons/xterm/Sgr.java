@@ -0,0 +1,129 @@
+/*-
+ * #%L
+ * XTerm Console Addon
+ * %%
+ * Copyright (C) 2020 - 2026 Flowing Code
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.flowingcode.vaadin.addons.xterm;
+
+import static com.flowingcode.vaadin.addons.xterm.CellStyle.BG_SHIFT;
+import static com.flowingcode.vaadin.addons.xterm.CellStyle.BOLD;
+import static com.flowingcode.vaadin.addons.xterm.CellStyle.COLOR_MASK;
+import static com.flowingcode.vaadin.addons.xterm.CellStyle.DIM;
+import static com.flowingcode.vaadin.addons.xterm.CellStyle.FG_SHIFT;
+import static com.flowingcode.vaadin.addons.xterm.CellStyle.FLAGS;
+import static com.flowingcode.vaadin.addons.xterm.CellStyle.PALETTE_COLOR;
+
+/**
+ * Writes the SGR (select graphic rendition) sequences that change the character attributes of a
+ * terminal from one {@linkplain CellStyle packed style} to another. Only the attributes that change
+ * are written, unless resetting all the attributes first is shorter.
+ */
+final class Sgr {
+
+  /** The SGR parameters that set each flag, in the order of the flag bits. */
+  private static final int[] SET = {1, 2, 3, 4, 5, 7, 8, 9};
+
+  /** The SGR parameters that clear each flag, in the order of the flag bits. */
+  private static final int[] CLEAR = {22, 22, 23, 24, 25, 27, 28, 29};
+
+  private Sgr() {}
+
+  /** Returns the sequence that changes the attributes from {@code from} to {@code to}. */
+  static String toSequence(long from, long to) {
+    StringBuilder sb = new StringBuilder();
+    append(sb, from, to);
+    return sb.toString();
+  }
+
+  /**
+   * Appends the sequence that changes the attributes from {@code from} to {@code to}. Nothing is
+   * appended if they are equal.
+   */
+  static void append(StringBuilder sb, long from, long to) {
+    if (from == to) {
+      return;
+    } else if (to == 0) {
+      sb.append("\033[m");
+      return;
+    }
+
+    int start = sb.length();
+    sb.append("\033[");
+    appendChanges(sb, from, to);
+    sb.setCharAt(sb.length() - 1, 'm');
+    if (from != 0) {
+      // resetting first may be shorter, e.g. when several attributes are cleared
+      int incremental = sb.length();
+      sb.append("\033[0;");
+      appendChanges(sb, 0, to);
+      sb.setCharAt(sb.length() - 1, 'm');
+      if (sb.length() - incremental < incremental - start) {
+        sb.delete(start, incremental);
+      } else {
+        sb.setLength(incremental);
+      }
+    }
+  }
+
+  /** Appends the parameters for the changes, each one followed by a separator. */
+  private static void appendChanges(StringBuilder sb, long from, long to) {
+    int cleared = (int) (from & ~to & FLAGS);
+    int set = (int) (to & ~from & FLAGS);
+    if ((cleared & (BOLD | DIM)) != 0) {
+      // the same parameter clears both bold and dim
+      sb.append("22;");
+      set |= (int) to & (BOLD | DIM);
+      cleared &= ~(BOLD | DIM);
+    }
+    for (int i = 2; i < 8; i++) {
+      if ((cleared & 1 << i) != 0) {
+        sb.append(CLEAR[i]).append(';');
+      }
+    }
+    for (int i = 0; i < 8; i++) {
+      if ((set & 1 << i) != 0) {
+        sb.append(SET[i]).append(';');
+      }
+    }
+    appendColor(sb, from, to, FG_SHIFT, 30);
+    appendColor(sb, from, to, BG_SHIFT, 40);
+  }
+
+  private static void appendColor(StringBuilder sb, long from, long to, int shift, int base) {
+    int color = (int) (to >>> shift & COLOR_MASK);
+    if (color == (int) (from >>> shift & COLOR_MASK)) {
+      return;
+    }
+    int value = color & 0xffffff;
+    if (color == 0) {
+      sb.append(base + 9);
+    } else if ((color & ~0xffffff) == PALETTE_COLOR) {
+      if (value < 8) {
+        sb.append(base + value);
+      } else if (value < 16) {
+        sb.append(base + 60 + value - 8);
+      } else {
+        sb.append(base + 8).append(";5;").append(value);
+      }
+    } else {
+      sb.append(base + 8).append(";2;").append(value >> 16).append(';')
+          .append(value >> 8 & 0xff).append(';').append(value & 0xff);
+    }
+    sb.append(';');
+  }
+
+}
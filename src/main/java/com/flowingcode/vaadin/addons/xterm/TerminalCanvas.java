@@ -0,0 +1,283 @@
+/*-
+ * #%L
+ * XTerm Console Addon
+ * %%
+ * Copyright (C) 2020 - 2026 Flowing Code
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.flowingcode.vaadin.addons.xterm;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * A grid of cells that is drawn on the screen of a terminal, for full-screen views such as
+ * dashboards. The application sets the characters and styles of the cells, and then calls
+ * {@link #flush()}, which compares the grid with the frame that was drawn last, and writes only
+ * the cursor movements, SGR sequences and characters needed for the cells that changed.
+ * <p>
+ * The canvas is drawn from the top-left corner of the screen, and it assumes that nothing else
+ * writes to that area. Each code point takes one cell: characters that take two cells in the
+ * terminal are not supported. After the screen is cleared by other means (for instance, when the
+ * terminal is attached again), call {@link #invalidate()} so that the next flush redraws the whole
+ * canvas.
+ * </p>
+ *
+ * <pre>{@code
+ * TerminalCanvas canvas = new TerminalCanvas(xterm, 80, 24);
+ * canvas.print(0, 0, "CPU", CellStyle.DEFAULT.withBold(true));
+ * canvas.print(5, 0, String.format("%3d%%", cpu), CellStyle.DEFAULT);
+ * canvas.flush();
+ * }</pre>
+ */
+@SuppressWarnings("serial")
+public class TerminalCanvas implements Serializable {
+
+  private static final int BLANK = ' ';
+
+  private final XTermBase xterm;
+
+  private final int columns;
+
+  private final int rows;
+
+  /** The cells that are being drawn. */
+  private final int[] chars;
+
+  private final long[] styles;
+
+  /** The cells of the last frame that was written. */
+  private final int[] frontChars;
+
+  private final long[] frontStyles;
+
+  private boolean invalid = true;
+
+  private final StringBuilder out = new StringBuilder();
+
+  /** The position of the cursor, where a column of {@code -1} means that it is unknown. */
+  private int cursorX = -1;
+
+  private int cursorY;
+
+  private long style;
+
+  /**
+   * Creates a new canvas of the given size, that draws on the given terminal.
+   *
+   * @throws IllegalArgumentException if {@code columns} or {@code rows} is not positive
+   */
+  public TerminalCanvas(XTermBase xterm, int columns, int rows) {
+    if (columns <= 0 || rows <= 0) {
+      throw new IllegalArgumentException("columns and rows must be positive");
+    }
+    this.xterm = Objects.requireNonNull(xterm);
+    this.columns = columns;
+    this.rows = rows;
+    chars = new int[columns * rows];
+    styles = new long[columns * rows];
+    frontChars = new int[columns * rows];
+    frontStyles = new long[columns * rows];
+    Arrays.fill(chars, BLANK);
+  }
+
+  /** Returns the number of columns of this canvas. */
+  public int getColumns() {
+    return columns;
+  }
+
+  /** Returns the number of rows of this canvas. */
+  public int getRows() {
+    return rows;
+  }
+
+  /**
+   * Sets the character and the style of a cell.
+   *
+   * @throws IndexOutOfBoundsException if the cell is outside the canvas
+   */
+  public void set(int column, int row, int codePoint, CellStyle style) {
+    int i = index(column, row);
+    chars[i] = codePoint;
+    styles[i] = style.bits();
+  }
+
+  /** Returns the character of a cell. */
+  public int getCodePoint(int column, int row) {
+    return chars[index(column, row)];
+  }
+
+  /** Returns the style of a cell. */
+  public CellStyle getStyle(int column, int row) {
+    return CellStyle.of(styles[index(column, row)]);
+  }
+
+  /**
+   * Writes text from a cell to the right, on a single row. The text is clipped at the right edge
+   * of the canvas; control characters are drawn as blanks.
+   *
+   * @return the number of cells that were set
+   * @throws IndexOutOfBoundsException if the cell is outside the canvas
+   */
+  public int print(int column, int row, String text, CellStyle style) {
+    int i = index(column, row);
+    int end = i - column + columns;
+    long bits = style.bits();
+    int start = i;
+    for (int k = 0; k < text.length() && i < end; i++) {
+      int cp = text.codePointAt(k);
+      k += Character.charCount(cp);
+      chars[i] = Character.isISOControl(cp) ? BLANK : cp;
+      styles[i] = bits;
+    }
+    return i - start;
+  }
+
+  /**
+   * Fills a region with a character and a style. The region is clipped to the canvas.
+   *
+   * @param column the first column of the region
+   * @param row the first row of the region
+   * @param width the number of columns of the region
+   * @param height the number of rows of the region
+   */
+  public void fill(int column, int row, int width, int height, int codePoint, CellStyle style) {
+    int x0 = Math.max(0, column);
+    int x1 = Math.min(columns, column + width);
+    long bits = style.bits();
+    for (int y = Math.max(0, row); y < Math.min(rows, row + height); y++) {
+      if (x0 < x1) {
+        Arrays.fill(chars, y * columns + x0, y * columns + x1, codePoint);
+        Arrays.fill(styles, y * columns + x0, y * columns + x1, bits);
+      }
+    }
+  }
+
+  /** Sets the style of a region, without changing its characters. The region is clipped. */
+  public void setStyle(int column, int row, int width, int height, CellStyle style) {
+    int x0 = Math.max(0, column);
+    int x1 = Math.min(columns, column + width);
+    for (int y = Math.max(0, row); y < Math.min(rows, row + height); y++) {
+      if (x0 < x1) {
+        Arrays.fill(styles, y * columns + x0, y * columns + x1, style.bits());
+      }
+    }
+  }
+
+  /** Fills the whole canvas with blanks in the default style. */
+  public void clear() {
+    fill(0, 0, columns, rows, BLANK, CellStyle.DEFAULT);
+  }
+
+  /** Makes the next {@link #flush()} clear the screen and redraw the whole canvas. */
+  public void invalidate() {
+    invalid = true;
+  }
+
+  private int index(int column, int row) {
+    Objects.checkIndex(column, columns);
+    Objects.checkIndex(row, rows);
+    return row * columns + column;
+  }
+
+  /**
+   * Writes the cells that changed since the last flush to the terminal.
+   *
+   * @return the number of characters that were written
+   */
+  public int flush() {
+    out.setLength(0);
+    style = 0;
+    cursorX = -1;
+    if (invalid) {
+      // the screen is cleared, and compared with a blank frame
+      invalid = false;
+      out.append("\033[m\033[H\033[2J");
+      cursorX = 0;
+      cursorY = 0;
+      Arrays.fill(frontChars, BLANK);
+      Arrays.fill(frontStyles, 0);
+    }
+
+    for (int y = 0; y < rows; y++) {
+      int row = y * columns;
+      for (int x = 0; x < columns; x++) {
+        int i = row + x;
+        if (chars[i] != frontChars[i] || styles[i] != frontStyles[i]) {
+          moveTo(x, y);
+          Sgr.append(out, style, styles[i]);
+          style = styles[i];
+          out.appendCodePoint(chars[i]);
+          frontChars[i] = chars[i];
+          frontStyles[i] = styles[i];
+          // the cursor position after writing in the last column depends on the terminal width
+          cursorX = x + 1 < columns ? x + 1 : -1;
+          cursorY = y;
+        }
+      }
+    }
+
+    if (style != 0) {
+      Sgr.append(out, style, 0);
+    }
+    int n = out.length();
+    if (n > 0) {
+      xterm.write(out.toString());
+    }
+    return n;
+  }
+
+  /** Appends the shortest sequence that moves the cursor to the given cell. */
+  private void moveTo(int x, int y) {
+    if (cursorX >= 0 && cursorY == y) {
+      int gap = x - cursorX;
+      if (gap == 0) {
+        return;
+      }
+      if (gap > 0 && gap <= 4 && isUnchanged(y * columns + cursorX, gap)) {
+        // rewriting a few unchanged cells is shorter than moving the cursor
+        for (int i = y * columns + cursorX; i < y * columns + x; i++) {
+          out.appendCodePoint(frontChars[i]);
+        }
+        return;
+      }
+      if (gap == 1) {
+        out.append("\033[C");
+      } else if (gap > 0) {
+        out.append("\033[").append(gap).append('C');
+      } else {
+        out.append("\033[").append(x + 1).append('G');
+      }
+    } else if (cursorX >= 0 && y == cursorY + 1 && x == 0) {
+      out.append("\r\n");
+    } else if (x == 0) {
+      out.append("\033[").append(y + 1).append('H');
+    } else {
+      out.append("\033[").append(y + 1).append(';').append(x + 1).append('H');
+    }
+  }
+
+  /** Returns whether {@code n} cells from {@code i} are unchanged, and in the current style. */
+  private boolean isUnchanged(int i, int n) {
+    for (int j = i; j < i + n; j++) {
+      if (chars[j] != frontChars[j] || styles[j] != frontStyles[j] || styles[j] != style) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+}
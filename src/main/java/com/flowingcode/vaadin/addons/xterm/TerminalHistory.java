@@ -45,6 +45,8 @@ public class TerminalHistory implements Serializable {
 
   private final XTermBase terminal;
 
+  private final AnsiWriter writer;
+
   private List<Registration> registrations;
 
   private String lastRet;
@@ -58,6 +60,7 @@ public class TerminalHistory implements Serializable {
       throw new IllegalArgumentException("The terminal already has a history");
     }
     this.terminal = terminal;
+    writer = new AnsiWriter(terminal);
     ComponentUtil.setData(terminal, TerminalHistory.class, this);
   }
 
@@ -97,6 +100,8 @@ public class TerminalHistory implements Serializable {
       registrations.forEach(Registration::remove);
       registrations = null;
     } else if (enabled && registrations == null) {
+      // track the current line, so that it is known without a round-trip on arrow up
+      terminal.getInputModel();
       registrations = new ArrayList<>();
       registrations.add(((ITerminalConsole) terminal).addLineListener(ev -> {
         add(ev.getLine());
@@ -130,9 +135,9 @@ public class TerminalHistory implements Serializable {
 
   private void write(String line) {
     if (line != null) {
-      // erase logical line, cursor home in logical line, cursor horizontal absolute
       String prompt = ((ITerminalConsole) terminal).getPrompt();
-      terminal.write("\033[<2K\033[<H\033[G" + prompt + line);
+      writer.eraseLogicalLine().logicalLineHome().cursorColumn(0);
+      writer.append(prompt).append(line).flush();
       lastRet = line;
     }
   }
@@ -0,0 +1,1397 @@
+/*-
+ * #%L
+ * XTerm Console Addon
+ * %%
+ * Copyright (C) 2020 - 2026 Flowing Code
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.flowingcode.vaadin.addons.xterm;
+
+import static com.flowingcode.vaadin.addons.xterm.CellStyle.BG_SHIFT;
+import static com.flowingcode.vaadin.addons.xterm.CellStyle.BLINK;
+import static com.flowingcode.vaadin.addons.xterm.CellStyle.BOLD;
+import static com.flowingcode.vaadin.addons.xterm.CellStyle.COLOR_MASK;
+import static com.flowingcode.vaadin.addons.xterm.CellStyle.DIM;
+import static com.flowingcode.vaadin.addons.xterm.CellStyle.FG_SHIFT;
+import static com.flowingcode.vaadin.addons.xterm.CellStyle.INVERSE;
+import static com.flowingcode.vaadin.addons.xterm.CellStyle.INVISIBLE;
+import static com.flowingcode.vaadin.addons.xterm.CellStyle.ITALIC;
+import static com.flowingcode.vaadin.addons.xterm.CellStyle.PALETTE_COLOR;
+import static com.flowingcode.vaadin.addons.xterm.CellStyle.RGB_COLOR;
+import static com.flowingcode.vaadin.addons.xterm.CellStyle.STRIKETHROUGH;
+import static com.flowingcode.vaadin.addons.xterm.CellStyle.UNDERLINE;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * A server-side model of the contents of a terminal. The model parses the same output as the
+ * client-side terminal (the escape sequences of VT100 and xterm that are commonly used by
+ * applications), and keeps a grid of cells with its scrollback, the cursor position, and which
+ * lines are wrapped, so that the contents of the terminal can be read without a round-trip to the
+ * client.
+ * <p>
+ * The model is only fed with output that is written from the server. Text that is typed by the
+ * user and echoed by the client, the prompt written by {@link ITerminalConsole#writePrompt()}, and
+ * resizes that are performed by the client (such as those of {@link ITerminalFit}) are not
+ * reflected. Lines are not reflowed when the terminal is resized. Line feeds also perform a
+ * carriage return, as the client-side terminal is configured to do. The rows of
+ * {@linkplain LiveRegion live regions} are updated as long as they are on the screen.
+ * </p>
+ * <p>
+ * Instances of this class are not thread-safe.
+ * </p>
+ *
+ * @see XTermBase#setTerminalModelEnabled(boolean)
+ */
+@SuppressWarnings("serial")
+public final class TerminalModel implements Serializable {
+
+  /** The value of the second cell of a wide character. */
+  private static final int WIDE_TAIL = -1;
+
+  /**
+   * The value of the first cell that holds a character followed by combining marks. Such cells
+   * hold {@code COMBINED} plus the index of the text in {@link #combined}.
+   */
+  private static final int COMBINED = Character.MAX_CODE_POINT + 1;
+
+  private static final int DEFAULT_SCROLLBACK = 1000;
+
+  /** The DEC special graphics characters from {@code 0x5f} to {@code 0x7e}. */
+  private static final String LINE_DRAWING =
+      " ◆▒␉␌␍␊°±␤␋┘┐┌└"
+          + "┼⎺⎻─⎼⎽├┤┴┬│≤≥π"
+          + "≠£·";
+
+  /** A row of cells. */
+  private static final class Line implements Serializable {
+
+    int[] chars;
+
+    long[] attrs;
+
+    boolean wrapped;
+
+    Line(int columns) {
+      chars = new int[columns];
+      attrs = new long[columns];
+    }
+
+    void resize(int columns) {
+      boolean cut = columns > 0 && columns < chars.length && chars[columns] == WIDE_TAIL;
+      chars = Arrays.copyOf(chars, columns);
+      attrs = Arrays.copyOf(attrs, columns);
+      if (cut) {
+        chars[columns - 1] = 0;
+      }
+    }
+
+    void erase(int from, int to, long attr) {
+      Arrays.fill(chars, from, to, 0);
+      Arrays.fill(attrs, from, to, attr);
+    }
+
+    /** Clears the halves of wide characters that are cut at {@code from} or {@code to}. */
+    void split(int from, int to) {
+      if (from > 0 && from < chars.length && chars[from] == WIDE_TAIL) {
+        chars[from - 1] = 0;
+        chars[from] = 0;
+      }
+      if (to > 0 && to < chars.length && chars[to] == WIDE_TAIL) {
+        chars[to - 1] = 0;
+        chars[to] = 0;
+      }
+    }
+
+    void reset(long attr) {
+      erase(0, chars.length, attr);
+      wrapped = false;
+    }
+
+    int trimmedLength() {
+      int n = chars.length;
+      while (n > 0 && chars[n - 1] == 0) {
+        n--;
+      }
+      return n;
+    }
+
+    void appendTo(StringBuilder sb, int end, List<String> combined) {
+      for (int i = 0; i < end; i++) {
+        int c = chars[i];
+        if (c == 0) {
+          sb.append(' ');
+        } else if (c >= COMBINED) {
+          sb.append(combined.get(c - COMBINED));
+        } else if (c != WIDE_TAIL) {
+          sb.appendCodePoint(c);
+        }
+      }
+    }
+  }
+
+  /** The lines of a buffer, in a ring that recycles the lines that leave the scrollback. */
+  private static final class Buffer implements Serializable {
+
+    private Line[] ring;
+
+    private int head;
+
+    private int length;
+
+    int x;
+
+    int y;
+
+    int scrollTop;
+
+    int scrollBottom;
+
+    int savedX;
+
+    int savedY;
+
+    long savedAttr;
+
+    boolean savedLineDrawing;
+
+    /** The number of lines that have been evicted from the top of the ring. */
+    long evicted;
+
+    Buffer(int columns, int rows, int scrollback) {
+      ring = new Line[rows + scrollback];
+      for (int i = 0; i < rows; i++) {
+        ring[i] = new Line(columns);
+      }
+      length = rows;
+      scrollBottom = rows - 1;
+    }
+
+    int length() {
+      return length;
+    }
+
+    Line get(int index) {
+      return ring[(head + index) % ring.length];
+    }
+
+    private void set(int index, Line line) {
+      ring[(head + index) % ring.length] = line;
+    }
+
+    /** Appends a blank line, evicting the oldest line if the ring is full. */
+    void push(int columns, long attr) {
+      if (length < ring.length) {
+        int index = (head + length++) % ring.length;
+        Line line = ring[index];
+        if (line == null || line.chars.length != columns) {
+          ring[index] = new Line(columns);
+        } else {
+          line.reset(attr);
+        }
+      } else {
+        Line line = ring[head];
+        head = (head + 1) % ring.length;
+        line.reset(attr);
+        evicted++;
+      }
+    }
+
+    /** Removes the lines after {@code newLength}. */
+    void truncate(int newLength) {
+      length = newLength;
+    }
+
+    /**
+     * Moves the lines from {@code from} to {@code to} (inclusive) by {@code n} positions (up if
+     * {@code n} is negative), and blanks the lines that are left behind.
+     */
+    void shift(int from, int to, int n, long attr) {
+      if (n < 0) {
+        for (int k = 0; k < -n; k++) {
+          Line first = get(from);
+          for (int i = from; i < to; i++) {
+            set(i, get(i + 1));
+          }
+          first.reset(attr);
+          set(to, first);
+        }
+      } else {
+        for (int k = 0; k < n; k++) {
+          Line last = get(to);
+          for (int i = to; i > from; i--) {
+            set(i, get(i - 1));
+          }
+          last.reset(attr);
+          set(from, last);
+        }
+      }
+    }
+
+    /** Changes the capacity of the ring, keeping the most recent lines. */
+    void setCapacity(int capacity) {
+      int n = Math.min(length, capacity);
+      Line[] lines = new Line[capacity];
+      for (int i = 0; i < n; i++) {
+        lines[i] = get(length - n + i);
+      }
+      ring = lines;
+      head = 0;
+      evicted += length - n;
+      length = n;
+    }
+
+    int capacity() {
+      return ring.length;
+    }
+  }
+
+  /** Dispatches the output of the parser to the model. */
+  private final class Emulator extends VtParser {
+
+    @Override
+    protected void print(CharSequence data, int start, int end) {
+      if (regionHidden) {
+        return;
+      }
+      for (int i = start; i < end; i++) {
+        char c = data.charAt(i);
+        if (c < 0x300 && !lineDrawing && !insertMode && active.x < columns) {
+          i = printNarrow(data, i, end) - 1;
+          continue;
+        }
+        int cp = c;
+        if (Character.isHighSurrogate(c) && i + 1 < end
+            && Character.isLowSurrogate(data.charAt(i + 1))) {
+          cp = Character.toCodePoint(c, data.charAt(++i));
+        } else if (lineDrawing && c >= 0x5f && c <= 0x7e) {
+          cp = LINE_DRAWING.charAt(c - 0x5f);
+        }
+        printCodePoint(cp);
+      }
+    }
+
+    /**
+     * Prints the run of characters that take one cell each, starting at {@code start}, up to the
+     * end of the current line.
+     *
+     * @return the index after the last printed character
+     */
+    private int printNarrow(CharSequence data, int start, int end) {
+      Buffer b = active;
+      Line line = currentLine();
+      int x = b.x;
+      int limit = Math.min(end, start + columns - x);
+      int i = start;
+      line.split(x, x);
+      for (char c; i < limit && (c = data.charAt(i)) < 0x300; i++, x++) {
+        line.chars[x] = c;
+        line.attrs[x] = attr;
+      }
+      line.split(x, x);
+      lastPrinted = data.charAt(i - 1);
+      b.x = x;
+      return i;
+    }
+
+    @Override
+    protected void execute(char c) {
+      switch (c) {
+        case '\b':
+          active.x = Math.min(active.x, columns - 1);
+          if (active.x > 0) {
+            active.x--;
+          }
+          break;
+        case '\t':
+          active.x = Math.min(columns - 1, (Math.min(active.x, columns - 1) / tabWidth + 1) * tabWidth);
+          break;
+        case '\n':
+        case 0x0b:
+        case 0x0c:
+          index();
+          active.x = 0;
+          break;
+        case '\r':
+          active.x = 0;
+          break;
+        default:
+          break;
+      }
+    }
+
+    @Override
+    protected void escDispatch(char intermediate, char finalChar) {
+      if (intermediate == '(') {
+        lineDrawing = finalChar == '0';
+        return;
+      } else if (intermediate != 0) {
+        return;
+      }
+      switch (finalChar) {
+        case '7':
+          saveCursor();
+          break;
+        case '8':
+          restoreCursor();
+          break;
+        case 'D':
+          index();
+          break;
+        case 'E':
+          index();
+          active.x = 0;
+          break;
+        case 'M':
+          reverseIndex();
+          break;
+        case 'c':
+          reset();
+          break;
+        default:
+          break;
+      }
+    }
+
+    @Override
+    protected void csiDispatch(char prefix, int[] params, int paramCount, char intermediate,
+        char finalChar) {
+      if (intermediate != 0) {
+        return;
+      }
+      int n = VtParser.param(params, paramCount, 0, 1);
+      switch (prefix) {
+        case 0:
+          csi(finalChar, params, paramCount, n);
+          break;
+        case '?':
+          if (finalChar == 'h' || finalChar == 'l') {
+            for (int i = 0; i < paramCount; i++) {
+              setPrivateMode(params[i], finalChar == 'h');
+            }
+          } else if (finalChar == 'J') {
+            eraseInDisplay(VtParser.paramOrZero(params, paramCount, 0, 0));
+          } else if (finalChar == 'K') {
+            eraseInLine(VtParser.paramOrZero(params, paramCount, 0, 0));
+          }
+          break;
+        case '<':
+          consoleCsi(finalChar, params, paramCount, n);
+          break;
+        default:
+          break;
+      }
+    }
+
+    private void csi(char finalChar, int[] params, int paramCount, int n) {
+      Buffer b = active;
+      switch (finalChar) {
+        case '@':
+          insertChars(n);
+          break;
+        case 'A':
+          b.y = Math.max(b.y - n, b.y >= b.scrollTop ? b.scrollTop : 0);
+          clampX();
+          break;
+        case 'B':
+        case 'e':
+          b.y = Math.min(b.y + n, b.y <= b.scrollBottom ? b.scrollBottom : rows - 1);
+          clampX();
+          break;
+        case 'C':
+        case 'a':
+          b.x = Math.min(b.x + n, columns - 1);
+          break;
+        case 'D':
+          b.x = Math.max(Math.min(b.x, columns - 1) - n, 0);
+          break;
+        case 'E':
+          b.y = Math.min(b.y + n, b.y <= b.scrollBottom ? b.scrollBottom : rows - 1);
+          b.x = 0;
+          break;
+        case 'F':
+          b.y = Math.max(b.y - n, b.y >= b.scrollTop ? b.scrollTop : 0);
+          b.x = 0;
+          break;
+        case 'G':
+        case '`':
+          b.x = Math.min(n, columns) - 1;
+          break;
+        case 'H':
+        case 'f':
+          b.y = Math.min(n, rows) - 1;
+          b.x = Math.min(VtParser.param(params, paramCount, 1, 1), columns) - 1;
+          break;
+        case 'I':
+          for (int i = 0; i < n; i++) {
+            execute('\t');
+          }
+          break;
+        case 'J':
+          eraseInDisplay(VtParser.paramOrZero(params, paramCount, 0, 0));
+          break;
+        case 'K':
+          eraseInLine(VtParser.paramOrZero(params, paramCount, 0, 0));
+          break;
+        case 'L':
+          insertLines(n);
+          break;
+        case 'M':
+          deleteLines(n);
+          break;
+        case 'P':
+          deleteChars(n);
+          break;
+        case 'S':
+          scrollUp(n, false);
+          break;
+        case 'T':
+          scrollDown(n);
+          break;
+        case 'X':
+          eraseChars(n);
+          break;
+        case 'Z':
+          b.x = Math.max(0, (Math.min(b.x, columns - 1) - 1) / tabWidth * tabWidth
+              - (n - 1) * tabWidth);
+          break;
+        case 'b':
+          if (lastPrinted != 0) {
+            for (int i = 0; i < n; i++) {
+              printCodePoint(lastPrinted);
+            }
+          }
+          break;
+        case 'd':
+          b.y = Math.min(n, rows) - 1;
+          clampX();
+          break;
+        case 'h':
+        case 'l':
+          for (int i = 0; i < paramCount; i++) {
+            if (params[i] == 4) {
+              insertMode = finalChar == 'h';
+            }
+          }
+          break;
+        case 'm':
+          selectGraphicRendition(params, paramCount);
+          break;
+        case 'r':
+          int top = VtParser.param(params, paramCount, 0, 1) - 1;
+          int bottom = Math.min(VtParser.param(params, paramCount, 1, rows), rows) - 1;
+          if (top < bottom) {
+            b.scrollTop = top;
+            b.scrollBottom = bottom;
+            b.x = 0;
+            b.y = 0;
+          }
+          break;
+        case 's':
+          saveCursor();
+          break;
+        case 'u':
+          restoreCursor();
+          break;
+        default:
+          break;
+      }
+    }
+
+    /** Handles the wrap-aware sequences of the console add-on. */
+    private void consoleCsi(char finalChar, int[] params, int paramCount, int n) {
+      Buffer b = active;
+      switch (finalChar) {
+        case 'H':
+          b.y = Math.max(0, firstRow(b.y));
+          b.x = 0;
+          break;
+        case 'E':
+          b.y = lastRow(b.y);
+          b.x = Math.min(currentLine().trimmedLength(), columns);
+          break;
+        case 'K':
+          int mode = VtParser.paramOrZero(params, paramCount, 0, 0);
+          int y = b.y;
+          int first = Math.max(0, firstRow(y));
+          int last = lastRow(y);
+          eraseInLine(mode);
+          if (mode == 1 || mode == 2) {
+            for (int i = first; i < y; i++) {
+              viewportLine(i).reset(eraseAttr());
+            }
+          }
+          if (mode == 0 || mode == 2) {
+            for (int i = y + 1; i <= last; i++) {
+              viewportLine(i).reset(eraseAttr());
+            }
+          }
+          break;
+        case 'L':
+          for (int i = 0; i < n; i++) {
+            if (b.x > 0) {
+              b.x = Math.min(b.x, columns) - 1;
+            } else if (currentLine().wrapped && b.y > 0) {
+              b.y--;
+              b.x = columns - 1;
+            }
+          }
+          break;
+        case 'R':
+          for (int i = 0; i < n; i++) {
+            if (b.x < columns - 1) {
+              b.x++;
+            } else if (b.y < rows - 1 && viewportLine(b.y + 1).wrapped) {
+              b.y++;
+              b.x = 0;
+            } else {
+              b.x = columns;
+            }
+          }
+          break;
+        case 'M':
+          markRegion(VtParser.paramOrZero(params, paramCount, 0, 0));
+          break;
+        case 'J':
+          enterRegion(VtParser.paramOrZero(params, paramCount, 0, 0),
+              VtParser.paramOrZero(params, paramCount, 1, 0));
+          break;
+        case 'U':
+          leaveRegion();
+          break;
+        case 'Q':
+          regionMarks.remove(VtParser.paramOrZero(params, paramCount, 0, 0));
+          break;
+        default:
+          break;
+      }
+    }
+  }
+
+  private final Emulator emulator = new Emulator();
+
+  private final Utf8Decoder decoder = new Utf8Decoder();
+
+  private int columns;
+
+  private int rows;
+
+  private int scrollback = DEFAULT_SCROLLBACK;
+
+  private int tabWidth = 8;
+
+  private Buffer normal;
+
+  private Buffer alternate;
+
+  private Buffer active;
+
+  private long attr;
+
+  private boolean autowrap;
+
+  private boolean insertMode;
+
+  private boolean cursorVisible;
+
+  private boolean lineDrawing;
+
+  private int lastPrinted;
+
+  /** The characters followed by combining marks that are held by the cells. */
+  private final List<String> combined = new ArrayList<>();
+
+  /** The index of each text in {@link #combined}. */
+  private final Map<String, Integer> combinedIndex = new HashMap<>();
+
+  /** The absolute line (in the normal buffer) of each live region, by id. */
+  private final Map<Integer, Long> regionMarks = new HashMap<>();
+
+  /** Whether a row of a live region is being written. */
+  private boolean inRegion;
+
+  /** Whether the row of a live region that is being written is not on the screen. */
+  private boolean regionHidden;
+
+  private int regionSavedX;
+
+  private int regionSavedY;
+
+  private long regionSavedAttr;
+
+  private boolean regionSavedInsertMode;
+
+  private boolean regionSavedAutowrap;
+
+  /** Creates a new terminal model with 80 columns and 24 rows. */
+  public TerminalModel() {
+    this(80, 24);
+  }
+
+  /**
+   * Creates a new terminal model with the given dimensions.
+   *
+   * @throws IllegalArgumentException if {@code columns} or {@code rows} is not positive
+   */
+  public TerminalModel(int columns, int rows) {
+    checkDimensions(columns, rows);
+    this.columns = columns;
+    this.rows = rows;
+    reset();
+  }
+
+  private static void checkDimensions(int columns, int rows) {
+    if (columns <= 0 || rows <= 0) {
+      throw new IllegalArgumentException("columns and rows must be positive");
+    }
+  }
+
+  /** Writes text to the terminal. */
+  public void write(String data) {
+    emulator.parse(data);
+  }
+
+  /** Writes {@code len} UTF-8 encoded bytes from {@code data}, starting at {@code off}. */
+  public void write(byte[] data, int off, int len) {
+    emulator.parse(decoder.decode(data, off, len));
+  }
+
+  /** Performs a full reset of the terminal, which clears the screen and the scrollback. */
+  public void reset() {
+    emulator.resetParser();
+    normal = new Buffer(columns, rows, scrollback);
+    alternate = null;
+    active = normal;
+    attr = 0;
+    autowrap = true;
+    insertMode = false;
+    cursorVisible = true;
+    lineDrawing = false;
+    lastPrinted = 0;
+    combined.clear();
+    combinedIndex.clear();
+    regionMarks.clear();
+    inRegion = false;
+    regionHidden = false;
+  }
+
+  /**
+   * Clears the scrollback and the screen, except for the line of the cursor, which becomes the
+   * first line of the screen.
+   */
+  public void clear() {
+    Buffer b = active;
+    Line line = currentLine();
+    Buffer cleared = new Buffer(columns, rows, b.capacity() - rows);
+    cleared.get(0).chars = line.chars;
+    cleared.get(0).attrs = line.attrs;
+    cleared.x = b.x;
+    if (b == normal) {
+      normal = cleared;
+      regionMarks.clear();
+    } else {
+      alternate = cleared;
+    }
+    active = cleared;
+  }
+
+  /**
+   * Resizes the terminal. Lines are truncated or padded, but not reflowed.
+   *
+   * @throws IllegalArgumentException if {@code columns} or {@code rows} is not positive
+   */
+  public void resize(int columns, int rows) {
+    checkDimensions(columns, rows);
+    for (Buffer b : new Buffer[] {normal, alternate}) {
+      if (b != null) {
+        resize(b, columns, rows, b == normal ? scrollback : 0);
+      }
+    }
+    this.columns = columns;
+    this.rows = rows;
+    // like the saved cursor, the position that is restored when a live region has been written
+    regionSavedX = Math.min(regionSavedX, columns - 1);
+    regionSavedY = Math.min(regionSavedY, rows - 1);
+  }
+
+  private void resize(Buffer b, int columns, int rows, int scrollback) {
+    for (int i = 0; i < b.length(); i++) {
+      b.get(i).resize(columns);
+    }
+
+    int cursor = b.length() - this.rows + b.y;
+    if (rows < this.rows) {
+      // empty lines below the cursor are removed, the others go to the scrollback
+      int remove = this.rows - rows;
+      while (remove > 0 && b.length() - 1 > cursor && b.get(b.length() - 1).trimmedLength() == 0) {
+        b.truncate(b.length() - 1);
+        remove--;
+      }
+    }
+    b.setCapacity(Math.max(b.capacity(), rows + scrollback));
+    while (b.length() < rows) {
+      b.push(columns, 0);
+    }
+    b.y = cursor - (b.length() - rows);
+    if (b.y < 0) {
+      // the line of the cursor must remain on the screen
+      b.truncate(b.length() + b.y);
+      b.y = 0;
+    }
+    b.setCapacity(rows + scrollback);
+    b.x = Math.min(b.x, columns - 1);
+    b.scrollTop = 0;
+    b.scrollBottom = rows - 1;
+    b.savedX = Math.min(b.savedX, columns - 1);
+    b.savedY = Math.min(b.savedY, rows - 1);
+  }
+
+  /**
+   * Sets the maximum number of lines that are kept in the scrollback. The default is 1000.
+   *
+   * @throws IllegalArgumentException if {@code scrollback} is negative
+   */
+  public void setScrollback(int scrollback) {
+    if (scrollback < 0) {
+      throw new IllegalArgumentException("scrollback must not be negative");
+    }
+    this.scrollback = scrollback;
+    normal.setCapacity(rows + scrollback);
+  }
+
+  /** Sets the distance between tab stops. The default is 8. */
+  public void setTabStopWidth(int width) {
+    if (width <= 0) {
+      throw new IllegalArgumentException("width must be positive");
+    }
+    tabWidth = width;
+  }
+
+  /** Returns the number of columns. */
+  public int getColumns() {
+    return columns;
+  }
+
+  /** Returns the number of rows. */
+  public int getRows() {
+    return rows;
+  }
+
+  /**
+   * Returns the column of the cursor. The column is equal to the number of columns when the
+   * cursor is past the end of a line that has just been filled.
+   */
+  public int getCursorX() {
+    return active.x;
+  }
+
+  /** Returns the row of the cursor, relative to the top of the screen. */
+  public int getCursorY() {
+    return active.y;
+  }
+
+  /** Returns whether the cursor is visible. */
+  public boolean isCursorVisible() {
+    return cursorVisible;
+  }
+
+  /** Returns whether the alternate screen buffer is active. */
+  public boolean isAlternateBufferActive() {
+    return active != normal;
+  }
+
+  /** Returns the number of lines in the active buffer, including the scrollback. */
+  public int getBufferLength() {
+    return active.length();
+  }
+
+  /**
+   * Returns the number of lines in the scrollback of the active buffer, which is also the index of
+   * the first line of the screen.
+   */
+  public int getScrollbackLength() {
+    return active.length() - rows;
+  }
+
+  /**
+   * Returns the text of a line of the active buffer, without trailing blanks.
+   *
+   * @param index the index of the line, where {@code 0} is the oldest line in the scrollback
+   * @throws IndexOutOfBoundsException if the index is out of range
+   */
+  public String getLine(int index) {
+    Line line = bufferLine(index);
+    StringBuilder sb = new StringBuilder(columns);
+    line.appendTo(sb, line.trimmedLength(), combined);
+    return sb.toString();
+  }
+
+  /**
+   * Returns whether a line of the active buffer is the continuation of the previous line, because
+   * the output wrapped.
+   *
+   * @throws IndexOutOfBoundsException if the index is out of range
+   */
+  public boolean isWrapped(int index) {
+    return bufferLine(index).wrapped;
+  }
+
+  /**
+   * Returns the style of a cell of the active buffer.
+   *
+   * @param column the column of the cell
+   * @param index the index of the line, where {@code 0} is the oldest line in the scrollback
+   * @throws IndexOutOfBoundsException if the column or the index is out of range
+   */
+  public CellStyle getStyle(int column, int index) {
+    return CellStyle.of(bufferLine(index).attrs[Objects.checkIndex(column, columns)]);
+  }
+
+  /**
+   * Returns the text of the logical line that contains a line of the active buffer, that is, the
+   * line together with the lines it wraps from and into, without trailing blanks.
+   *
+   * @throws IndexOutOfBoundsException if the index is out of range
+   */
+  public String getLogicalLine(int index) {
+    Buffer b = active;
+    Line line = bufferLine(index);
+    int first = index;
+    while (first > 0 && b.get(first).wrapped) {
+      first--;
+    }
+    int last = index;
+    while (last + 1 < b.length() && b.get(last + 1).wrapped) {
+      last++;
+    }
+    StringBuilder sb = new StringBuilder((last - first + 1) * columns);
+    for (int i = first; i <= last; i++) {
+      line = b.get(i);
+      line.appendTo(sb, i < last ? columns : line.trimmedLength(), combined);
+    }
+    int n = sb.length();
+    while (n > 0 && sb.charAt(n - 1) == ' ') {
+      n--;
+    }
+    sb.setLength(n);
+    return sb.toString();
+  }
+
+  /** Returns the text of the logical line of the cursor, without trailing blanks. */
+  public String getCurrentLine() {
+    return getLogicalLine(getScrollbackLength() + active.y);
+  }
+
+  /** Returns the text of the screen, with trailing blanks removed from each line. */
+  public String getScreenText() {
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < rows; i++) {
+      if (i > 0) {
+        sb.append('\n');
+      }
+      Line line = viewportLine(i);
+      line.appendTo(sb, line.trimmedLength(), combined);
+    }
+    return sb.toString();
+  }
+
+  private Line bufferLine(int index) {
+    if (index < 0 || index >= active.length()) {
+      throw new IndexOutOfBoundsException(index);
+    }
+    return active.get(index);
+  }
+
+  private Line viewportLine(int row) {
+    return active.get(active.length() - rows + row);
+  }
+
+  private Line currentLine() {
+    return viewportLine(active.y);
+  }
+
+  /** Returns the first screen row of the logical line at {@code row}, which may be negative. */
+  private int firstRow(int row) {
+    int base = active.length() - rows;
+    while (base + row > 0 && viewportLine(row).wrapped) {
+      row--;
+    }
+    return row;
+  }
+
+  /** Returns the last screen row of the logical line at {@code row}. */
+  private int lastRow(int row) {
+    while (row + 1 < rows && viewportLine(row + 1).wrapped) {
+      row++;
+    }
+    return row;
+  }
+
+  private void clampX() {
+    active.x = Math.min(active.x, columns - 1);
+  }
+
+  /** Returns the attributes of erased cells, which keep the current background color. */
+  private long eraseAttr() {
+    return attr & (COLOR_MASK << BG_SHIFT);
+  }
+
+  private static boolean isWide(int cp) {
+    return cp >= 0x1100 && (cp <= 0x115f
+        || cp >= 0x2e80 && cp <= 0xa4cf && cp != 0x303f
+        || cp >= 0xac00 && cp <= 0xd7a3
+        || cp >= 0xf900 && cp <= 0xfaff
+        || cp >= 0xfe30 && cp <= 0xfe4f
+        || cp >= 0xff00 && cp <= 0xff60
+        || cp >= 0xffe0 && cp <= 0xffe6
+        || cp >= 0x1f300 && cp <= 0x1f64f
+        || cp >= 0x1f900 && cp <= 0x1f9ff
+        || cp >= 0x20000 && cp <= 0x3fffd);
+  }
+
+  /** Returns the number of cells of a code point. */
+  private static int width(int cp) {
+    if (cp < 0x300) {
+      return 1;
+    }
+    switch (Character.getType(cp)) {
+      case Character.NON_SPACING_MARK:
+      case Character.ENCLOSING_MARK:
+      case Character.FORMAT:
+        return 0;
+      default:
+        return isWide(cp) ? 2 : 1;
+    }
+  }
+
+  private void printCodePoint(int cp) {
+    int width = width(cp);
+    if (width == 0) {
+      combineWithPrevious(cp);
+      return;
+    } else if (width > columns) {
+      return;
+    }
+    Buffer b = active;
+    if (b.x + width > columns) {
+      if (autowrap) {
+        if (b.x < columns) {
+          currentLine().erase(b.x, columns, eraseAttr());
+        }
+        index();
+        b.x = 0;
+        currentLine().wrapped = true;
+      } else {
+        b.x = columns - width;
+      }
+    }
+
+    Line line = currentLine();
+    if (insertMode) {
+      shiftRight(line, b.x, width);
+    }
+    line.split(b.x, b.x + width);
+    line.chars[b.x] = cp;
+    line.attrs[b.x] = attr;
+    if (width == 2) {
+      line.chars[b.x + 1] = WIDE_TAIL;
+      line.attrs[b.x + 1] = attr;
+    }
+    b.x += width;
+    lastPrinted = cp;
+  }
+
+  /**
+   * Appends a combining mark to the character before the cursor. Marks that do not follow a
+   * character, and other characters of no width, are discarded.
+   */
+  private void combineWithPrevious(int cp) {
+    int type = Character.getType(cp);
+    if (type != Character.NON_SPACING_MARK && type != Character.ENCLOSING_MARK) {
+      return;
+    }
+    Line line = currentLine();
+    int x = Math.min(active.x, columns) - 1;
+    if (x >= 0 && line.chars[x] == WIDE_TAIL) {
+      x--;
+    }
+    if (x < 0 || line.chars[x] <= 0) {
+      return;
+    }
+    int c = line.chars[x];
+    String text = (c >= COMBINED ? combined.get(c - COMBINED) : Character.toString(c))
+        + Character.toString(cp);
+    Integer index = combinedIndex.get(text);
+    if (index == null) {
+      index = combined.size();
+      combined.add(text);
+      combinedIndex.put(text, index);
+    }
+    line.chars[x] = COMBINED + index;
+  }
+
+  private void shiftRight(Line line, int x, int n) {
+    n = Math.min(n, columns - x);
+    line.split(x, x);
+    // a wide character that is shifted to the last column loses its second half
+    boolean cut = n < columns - x && line.chars[columns - n] == WIDE_TAIL;
+    System.arraycopy(line.chars, x, line.chars, x + n, columns - x - n);
+    System.arraycopy(line.attrs, x, line.attrs, x + n, columns - x - n);
+    line.erase(x, x + n, eraseAttr());
+    if (cut) {
+      line.chars[columns - 1] = 0;
+    }
+  }
+
+  private void index() {
+    Buffer b = active;
+    if (b.y == b.scrollBottom) {
+      scrollUp(1, true);
+    } else if (b.y < rows - 1) {
+      b.y++;
+    }
+  }
+
+  private void reverseIndex() {
+    Buffer b = active;
+    if (b.y == b.scrollTop) {
+      scrollDown(1);
+    } else if (b.y > 0) {
+      b.y--;
+    }
+  }
+
+  /**
+   * Scrolls the scroll region up. If {@code scrollback} is {@code true} and the scroll region is
+   * the whole screen, the top lines go to the scrollback.
+   */
+  private void scrollUp(int n, boolean scrollback) {
+    Buffer b = active;
+    int base = b.length() - rows;
+    if (scrollback && b.scrollTop == 0 && b.scrollBottom == rows - 1) {
+      for (int i = 0; i < n; i++) {
+        b.push(columns, eraseAttr());
+      }
+    } else {
+      n = Math.min(n, b.scrollBottom - b.scrollTop + 1);
+      b.shift(base + b.scrollTop, base + b.scrollBottom, -n, eraseAttr());
+    }
+  }
+
+  private void scrollDown(int n) {
+    Buffer b = active;
+    int base = b.length() - rows;
+    n = Math.min(n, b.scrollBottom - b.scrollTop + 1);
+    b.shift(base + b.scrollTop, base + b.scrollBottom, n, eraseAttr());
+  }
+
+  private void insertLines(int n) {
+    Buffer b = active;
+    if (b.y >= b.scrollTop && b.y <= b.scrollBottom) {
+      int base = b.length() - rows;
+      n = Math.min(n, b.scrollBottom - b.y + 1);
+      b.shift(base + b.y, base + b.scrollBottom, n, eraseAttr());
+      b.x = 0;
+    }
+  }
+
+  private void deleteLines(int n) {
+    Buffer b = active;
+    if (b.y >= b.scrollTop && b.y <= b.scrollBottom) {
+      int base = b.length() - rows;
+      n = Math.min(n, b.scrollBottom - b.y + 1);
+      b.shift(base + b.y, base + b.scrollBottom, -n, eraseAttr());
+      b.x = 0;
+    }
+  }
+
+  private void insertChars(int n) {
+    Buffer b = active;
+    if (b.x < columns) {
+      shiftRight(currentLine(), b.x, n);
+    }
+  }
+
+  private void deleteChars(int n) {
+    Buffer b = active;
+    int x = Math.min(b.x, columns - 1);
+    n = Math.min(n, columns - x);
+    Line line = currentLine();
+    line.split(x, x + n);
+    System.arraycopy(line.chars, x + n, line.chars, x, columns - x - n);
+    System.arraycopy(line.attrs, x + n, line.attrs, x, columns - x - n);
+    line.erase(columns - n, columns, eraseAttr());
+    if (line.chars[x] == WIDE_TAIL) {
+      line.chars[x] = 0;
+    }
+  }
+
+  private void eraseChars(int n) {
+    Buffer b = active;
+    int x = Math.min(b.x, columns - 1);
+    int end = Math.min(columns, x + n);
+    Line line = currentLine();
+    line.split(x, end);
+    line.erase(x, end, eraseAttr());
+  }
+
+  private void eraseInLine(int mode) {
+    Line line = currentLine();
+    int x = Math.min(active.x, columns - 1);
+    switch (mode) {
+      case 0:
+        line.split(x, columns);
+        line.erase(x, columns, eraseAttr());
+        break;
+      case 1:
+        line.split(0, x + 1);
+        line.erase(0, x + 1, eraseAttr());
+        break;
+      case 2:
+        line.erase(0, columns, eraseAttr());
+        break;
+      default:
+        break;
+    }
+  }
+
+  private void eraseInDisplay(int mode) {
+    Buffer b = active;
+    switch (mode) {
+      case 0:
+        eraseInLine(0);
+        for (int i = b.y + 1; i < rows; i++) {
+          viewportLine(i).reset(eraseAttr());
+        }
+        break;
+      case 1:
+        eraseInLine(1);
+        for (int i = 0; i < b.y; i++) {
+          viewportLine(i).reset(eraseAttr());
+        }
+        break;
+      case 2:
+        for (int i = 0; i < rows; i++) {
+          viewportLine(i).reset(eraseAttr());
+        }
+        break;
+      case 3:
+        b.setCapacity(rows);
+        b.setCapacity(rows + (b == normal ? scrollback : 0));
+        break;
+      default:
+        break;
+    }
+  }
+
+  /** Returns the absolute line of row {@code y} of the screen of the normal buffer. */
+  private long absoluteLine(int y) {
+    return normal.evicted + normal.length() - rows + y;
+  }
+
+  private void markRegion(int id) {
+    if (active.x > 0) {
+      index();
+      active.x = 0;
+    }
+    if (active == normal) {
+      regionMarks.put(id, absoluteLine(active.y));
+    }
+  }
+
+  private void enterRegion(int id, int row) {
+    if (!inRegion) {
+      inRegion = true;
+      regionSavedX = active.x;
+      regionSavedY = active.y;
+      regionSavedAttr = attr;
+      regionSavedInsertMode = insertMode;
+      regionSavedAutowrap = autowrap;
+    }
+    Long mark = regionMarks.get(id);
+    long y = mark == null || active != normal ? -1 : mark + row - absoluteLine(0);
+    regionHidden = y < 0 || y >= rows;
+    if (!regionHidden) {
+      insertMode = false;
+      autowrap = false;
+      active.x = 0;
+      active.y = (int) y;
+      eraseInLine(2);
+    }
+  }
+
+  private void leaveRegion() {
+    if (inRegion) {
+      active.x = regionSavedX;
+      active.y = regionSavedY;
+      attr = regionSavedAttr;
+      insertMode = regionSavedInsertMode;
+      autowrap = regionSavedAutowrap;
+      inRegion = false;
+    }
+    regionHidden = false;
+  }
+
+  private void saveCursor() {
+    Buffer b = active;
+    b.savedX = Math.min(b.x, columns - 1);
+    b.savedY = b.y;
+    b.savedAttr = attr;
+    b.savedLineDrawing = lineDrawing;
+  }
+
+  private void restoreCursor() {
+    Buffer b = active;
+    b.x = b.savedX;
+    b.y = b.savedY;
+    attr = b.savedAttr;
+    lineDrawing = b.savedLineDrawing;
+  }
+
+  private void setPrivateMode(int mode, boolean enabled) {
+    switch (mode) {
+      case 7:
+        autowrap = enabled;
+        break;
+      case 25:
+        cursorVisible = enabled;
+        break;
+      case 47:
+      case 1047:
+      case 1049:
+        if (enabled && active == normal) {
+          if (mode == 1049) {
+            saveCursor();
+          }
+          alternate = new Buffer(columns, rows, 0);
+          alternate.x = normal.x;
+          alternate.y = normal.y;
+          active = alternate;
+        } else if (!enabled && active != normal) {
+          active = normal;
+          alternate = null;
+          if (mode == 1049) {
+            restoreCursor();
+          }
+        }
+        break;
+      default:
+        break;
+    }
+  }
+
+  private void selectGraphicRendition(int[] params, int paramCount) {
+    for (int i = 0; i < paramCount; i++) {
+      int p = Math.max(params[i], 0);
+      if (p >= 30 && p <= 37) {
+        attr = withColor(attr, FG_SHIFT, PALETTE_COLOR | p - 30);
+      } else if (p >= 40 && p <= 47) {
+        attr = withColor(attr, BG_SHIFT, PALETTE_COLOR | p - 40);
+      } else if (p >= 90 && p <= 97) {
+        attr = withColor(attr, FG_SHIFT, PALETTE_COLOR | p - 82);
+      } else if (p >= 100 && p <= 107) {
+        attr = withColor(attr, BG_SHIFT, PALETTE_COLOR | p - 92);
+      } else if (p == 38 || p == 48) {
+        int shift = p == 38 ? FG_SHIFT : BG_SHIFT;
+        int type = VtParser.paramOrZero(params, paramCount, i + 1, 0);
+        if (type == 5 && i + 2 < paramCount) {
+          attr = withColor(attr, shift, PALETTE_COLOR | params[i + 2] & 0xff);
+          i += 2;
+        } else if (type == 2 && i + 4 < paramCount) {
+          int rgb = (params[i + 2] & 0xff) << 16 | (params[i + 3] & 0xff) << 8 | params[i + 4] & 0xff;
+          attr = withColor(attr, shift, RGB_COLOR | rgb);
+          i += 4;
+        } else {
+          i = paramCount;
+        }
+      } else {
+        selectGraphicRendition(p);
+      }
+    }
+  }
+
+  private void selectGraphicRendition(int p) {
+    switch (p) {
+      case 0:
+        attr = 0;
+        break;
+      case 1:
+        attr |= BOLD;
+        break;
+      case 2:
+        attr |= DIM;
+        break;
+      case 3:
+        attr |= ITALIC;
+        break;
+      case 4:
+      case 21:
+        attr |= UNDERLINE;
+        break;
+      case 5:
+        attr |= BLINK;
+        break;
+      case 7:
+        attr |= INVERSE;
+        break;
+      case 8:
+        attr |= INVISIBLE;
+        break;
+      case 9:
+        attr |= STRIKETHROUGH;
+        break;
+      case 22:
+        attr &= ~(BOLD | DIM);
+        break;
+      case 23:
+        attr &= ~ITALIC;
+        break;
+      case 24:
+        attr &= ~UNDERLINE;
+        break;
+      case 25:
+        attr &= ~BLINK;
+        break;
+      case 27:
+        attr &= ~INVERSE;
+        break;
+      case 28:
+        attr &= ~INVISIBLE;
+        break;
+      case 29:
+        attr &= ~STRIKETHROUGH;
+        break;
+      case 39:
+        attr = withColor(attr, FG_SHIFT, 0);
+        break;
+      case 49:
+        attr = withColor(attr, BG_SHIFT, 0);
+        break;
+      default:
+        break;
+    }
+  }
+
+  private static long withColor(long attr, int shift, int color) {
+    return attr & ~(COLOR_MASK << shift) | (long) color << shift;
+  }
+
+}
@@ -0,0 +1,155 @@
+/*-
+ * #%L
+ * XTerm Console Addon
+ * %%
+ * Copyright (C) 2020 - 2026 Flowing Code
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.flowingcode.vaadin.addons.xterm;
+
+import com.vaadin.flow.component.UI;
+import com.vaadin.flow.component.UIDetachedException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * An output stream that writes to a terminal from any thread, parking the producer while the
+ * client has not acknowledged enough of the previous output.
+ *
+ * @see XTermBase#openOutputStream()
+ */
+final class TerminalOutputStream extends OutputStream {
+
+  /** The size of the internal buffer, which is also the maximum size of a chunk. */
+  private static final int CHUNK_SIZE = 16 * 1024;
+
+  private final XTermBase xterm;
+
+  private final UI ui;
+
+  private final OutputFlowControl flowControl;
+
+  private final ReentrantLock lock = new ReentrantLock();
+
+  private final byte[] buffer = new byte[CHUNK_SIZE];
+
+  private int count;
+
+  private boolean closed;
+
+  TerminalOutputStream(XTermBase xterm, UI ui, OutputFlowControl flowControl) {
+    this.xterm = xterm;
+    this.ui = ui;
+    this.flowControl = flowControl;
+  }
+
+  @Override
+  public void write(int b) throws IOException {
+    lock.lock();
+    try {
+      ensureOpen();
+      if (count == buffer.length) {
+        flushBuffer();
+      }
+      buffer[count++] = (byte) b;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public void write(byte[] b, int off, int len) throws IOException {
+    Objects.checkFromIndexSize(off, len, b.length);
+    lock.lock();
+    try {
+      ensureOpen();
+      while (len > 0) {
+        if (count == buffer.length) {
+          flushBuffer();
+        }
+        int n = Math.min(len, buffer.length - count);
+        System.arraycopy(b, off, buffer, count, n);
+        count += n;
+        off += n;
+        len -= n;
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public void flush() throws IOException {
+    lock.lock();
+    try {
+      ensureOpen();
+      flushBuffer();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    lock.lock();
+    try {
+      if (!closed) {
+        flushBuffer();
+        closed = true;
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private void ensureOpen() throws IOException {
+    if (closed) {
+      throw new IOException("Stream closed");
+    }
+  }
+
+  private void flushBuffer() throws IOException {
+    if (count > 0) {
+      byte[] chunk = Arrays.copyOf(buffer, count);
+      count = 0;
+      send(chunk);
+    }
+  }
+
+  private void send(byte[] chunk) throws IOException {
+    // never park a thread that holds the session lock, since acknowledgements need that lock
+    boolean hasLock = UI.getCurrent() == ui;
+
+    OutputGovernor governor = xterm.getOutputGovernor();
+    if (governor != null && !hasLock) {
+      governor.acquire(chunk.length, OutputGovernor.countLines(chunk));
+    }
+    flowControl.acquire(chunk.length, !hasLock);
+    try {
+      if (hasLock) {
+        xterm.writeAcknowledged(chunk);
+      } else {
+        ui.access(() -> xterm.writeAcknowledged(chunk));
+      }
+    } catch (UIDetachedException e) {
+      flowControl.release(chunk.length);
+      throw new IOException("The terminal has been detached", e);
+    }
+  }
+
+}
@@ -0,0 +1,109 @@
+/*-
+ * #%L
+ * XTerm Console Addon
+ * %%
+ * Copyright (C) 2020 - 2026 Flowing Code
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.flowingcode.vaadin.addons.xterm;
+
+import com.flowingcode.vaadin.addons.xterm.ITerminalOptions.CursorStyle;
+import elemental.json.Json;
+import elemental.json.JsonObject;
+import java.io.Serializable;
+import java.util.Locale;
+import java.util.Objects;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.With;
+import lombok.experimental.FieldDefaults;
+
+/**
+ * An immutable set of appearance options (theme, font and cursor) that can be applied to terminals
+ * with {@link ITerminalOptions#setProfile(TerminalProfile)}.
+ * <p>
+ * The options of a profile are serialized once, and sent to the client once per UI: terminals
+ * that use a profile that the client already knows only send its identifier. Profiles with the
+ * same identifier are expected to have the same options; if they don't, the client-side definition
+ * is replaced.
+ * </p>
+ *
+ * <pre>{@code
+ * static final TerminalProfile DARK = TerminalProfile.of("dark")
+ *     .withTheme(new TerminalTheme().withBackground("#000").withForeground("#ddd"))
+ *     .withFontSize(14);
+ *
+ * terminals.forEach(xterm -> xterm.setProfile(DARK));
+ * }</pre>
+ */
+@SuppressWarnings("serial")
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+@With
+@Getter
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+public final class TerminalProfile implements Serializable {
+
+  /** The identifier of the profile. */
+  String id;
+
+  /** The color theme. */
+  TerminalTheme theme;
+
+  /** The font family. */
+  String fontFamily;
+
+  /** The font size, in pixels. */
+  Integer fontSize;
+
+  /** The style of the cursor. */
+  CursorStyle cursorStyle;
+
+  /** Whether the cursor blinks. */
+  Boolean cursorBlink;
+
+  /** The options of the profile. Since profiles are immutable, they are computed once. */
+  private volatile JsonObject $options;
+
+  /** Creates a profile with the given identifier, that does not set any option. */
+  public static TerminalProfile of(String id) {
+    return new TerminalProfile(Objects.requireNonNull(id), null, null, null, null, null);
+  }
+
+  /** Returns the options of this profile as a JSON object, which must not be modified. */
+  JsonObject asJsonObject() {
+    if ($options == null) {
+      JsonObject options = Json.createObject();
+      if (theme != null) {
+        options.put("theme", theme.asJsonObject());
+      }
+      if (fontFamily != null) {
+        options.put("fontFamily", fontFamily);
+      }
+      if (fontSize != null) {
+        options.put("fontSize", fontSize);
+      }
+      if (cursorStyle != null) {
+        options.put("cursorStyle", cursorStyle.name().toLowerCase(Locale.ENGLISH));
+      }
+      if (cursorBlink != null) {
+        options.put("cursorBlink", cursorBlink);
+      }
+      $options = options;
+    }
+    return $options;
+  }
+
+}
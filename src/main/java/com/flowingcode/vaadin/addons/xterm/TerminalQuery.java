@@ -0,0 +1,119 @@
+/*-
+ * #%L
+ * XTerm Console Addon
+ * %%
+ * Copyright (C) 2020 - 2026 Flowing Code
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.flowingcode.vaadin.addons.xterm;
+
+import elemental.json.JsonArray;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Reads several values from the client-side terminal in a single round-trip.
+ *
+ * <pre>{@code
+ * xterm.query().with(TerminalValue.HAS_SELECTION).with(TerminalValue.SELECTION).fetch()
+ *     .thenAccept(result -> {
+ *       if (result.get(TerminalValue.HAS_SELECTION)) {
+ *         Notification.show(result.get(TerminalValue.SELECTION));
+ *       }
+ *     });
+ * }</pre>
+ *
+ * <p>
+ * A query may be fetched before the terminal is initialized: it is evaluated as soon as the
+ * client-side terminal is opened. Fetching a query that is identical to a query still in flight,
+ * while no other command has been sent to the terminal, shares the result of the first one.
+ * </p>
+ *
+ * @see XTermBase#query()
+ */
+public final class TerminalQuery {
+
+  /** The values read by a {@link TerminalQuery}. */
+  public static final class Result {
+
+    private final Map<TerminalValue<?>, Object> values;
+
+    private Result(Map<TerminalValue<?>, Object> values) {
+      this.values = values;
+    }
+
+    /**
+     * Returns the value read for {@code value}.
+     *
+     * @throws IllegalArgumentException if {@code value} was not part of the query
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T get(TerminalValue<T> value) {
+      if (!values.containsKey(value)) {
+        throw new IllegalArgumentException("The value was not queried");
+      }
+      return (T) values.get(value);
+    }
+  }
+
+  private final XTermBase xterm;
+
+  private final List<TerminalValue<?>> values = new ArrayList<>();
+
+  TerminalQuery(XTermBase xterm) {
+    this.xterm = xterm;
+  }
+
+  /** Adds a value to this query. */
+  public TerminalQuery with(TerminalValue<?> value) {
+    Objects.requireNonNull(value);
+    if (!values.contains(value)) {
+      values.add(value);
+    }
+    return this;
+  }
+
+  /**
+   * Sends the query to the client.
+   *
+   * @return a future that is completed with the values when the client responds
+   */
+  public CompletableFuture<Result> fetch() {
+    List<TerminalValue<?>> values = Collections.unmodifiableList(new ArrayList<>(this.values));
+    StringBuilder expression = new StringBuilder("[");
+    for (TerminalValue<?> value : values) {
+      if (expression.length() > 1) {
+        expression.append(',');
+      }
+      expression.append(value.getExpression());
+    }
+    expression.append(']');
+
+    return xterm.fetch(expression.toString()).thenApply(json -> {
+      JsonArray array = (JsonArray) json;
+      Map<TerminalValue<?>, Object> result = new HashMap<>();
+      for (int i = 0; i < values.size(); i++) {
+        result.put(values.get(i), values.get(i).map(array.get(i)));
+      }
+      return new Result(result);
+    });
+  }
+
+}
@@ -0,0 +1,52 @@
+/*-
+ * #%L
+ * XTerm Console Addon
+ * %%
+ * Copyright (C) 2020 - 2026 Flowing Code
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.flowingcode.vaadin.addons.xterm;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A shared timer for delayed terminal tasks. Tasks must be short, since they run on a single
+ * daemon thread; typically they just hand over work to {@code UI.access}.
+ */
+final class TerminalScheduler {
+
+  private static final ScheduledExecutorService executor = createExecutor();
+
+  private TerminalScheduler() {}
+
+  private static ScheduledExecutorService createExecutor() {
+    ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, runnable -> {
+      Thread thread = new Thread(runnable, "xterm-scheduler");
+      thread.setDaemon(true);
+      return thread;
+    });
+    executor.setRemoveOnCancelPolicy(true);
+    return executor;
+  }
+
+  /** Runs {@code task} after the given delay, in milliseconds. */
+  static ScheduledFuture<?> schedule(Runnable task, long delayMillis) {
+    return executor.schedule(task, delayMillis, TimeUnit.MILLISECONDS);
+  }
+
+}
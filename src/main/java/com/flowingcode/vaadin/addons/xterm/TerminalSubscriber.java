@@ -0,0 +1,230 @@
+/*-
+ * #%L
+ * XTerm Console Addon
+ * %%
+ * Copyright (C) 2020 - 2026 Flowing Code
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.flowingcode.vaadin.addons.xterm;
+
+import com.vaadin.flow.component.UI;
+import com.vaadin.flow.component.UIDetachedException;
+import com.vaadin.flow.shared.Registration;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * A {@link Flow.Subscriber} that writes the items it receives to a terminal.
+ * <p>
+ * Demand is driven by the client: the subscriber requests a new batch of items only after the
+ * previous batch has been received and the terminal has room for more output, that is, when the
+ * bytes pending acknowledgement from the client are below the
+ * {@linkplain XTermBase#setOutputHighWaterMark(int) high-water mark}. The items received between
+ * two UI updates are written as a single acknowledged write.
+ * </p>
+ * <p>
+ * Output is delivered through {@link UI#access(com.vaadin.flow.server.Command)}, which requires
+ * server push to be enabled. If the UI is detached, the subscription is cancelled.
+ * </p>
+ *
+ * <pre>{@code
+ * publisher.subscribe(TerminalSubscriber.ofStrings(xterm));
+ * }</pre>
+ *
+ * @param <T> the type of the items
+ */
+public class TerminalSubscriber<T> implements Flow.Subscriber<T> {
+
+  private static final int DEFAULT_BATCH_SIZE = 16;
+
+  private final XTermBase xterm;
+
+  private final UI ui;
+
+  private final Function<? super T, byte[]> encoder;
+
+  private final Queue<byte[]> queue = new ConcurrentLinkedQueue<>();
+
+  private final AtomicBoolean drainScheduled = new AtomicBoolean();
+
+  private final AtomicLong outstanding = new AtomicLong();
+
+  private int batchSize = DEFAULT_BATCH_SIZE;
+
+  private String completionTrailer;
+
+  private Function<? super Throwable, String> errorTrailer = t -> "\r\n" + t + "\r\n";
+
+  private volatile Flow.Subscription subscription;
+
+  private volatile Throwable error;
+
+  private volatile boolean done;
+
+  private boolean terminated;
+
+  private volatile Registration releaseRegistration;
+
+  /**
+   * Creates a new subscriber that writes to the given terminal.
+   *
+   * @param xterm the terminal
+   * @param encoder a function that converts each item into UTF-8 encoded bytes
+   * @throws IllegalStateException if the terminal is not attached to a UI
+   */
+  public TerminalSubscriber(XTermBase xterm, Function<? super T, byte[]> encoder) {
+    this.xterm = Objects.requireNonNull(xterm);
+    this.encoder = Objects.requireNonNull(encoder);
+    ui = xterm.getUI().orElseThrow(() -> new IllegalStateException("Terminal is not attached"));
+  }
+
+  /** Creates a new subscriber that writes strings to the given terminal. */
+  public static TerminalSubscriber<String> ofStrings(XTermBase xterm) {
+    return new TerminalSubscriber<>(xterm, s -> s.getBytes(StandardCharsets.UTF_8));
+  }
+
+  /** Creates a new subscriber that writes UTF-8 encoded byte chunks to the given terminal. */
+  public static TerminalSubscriber<byte[]> ofBytes(XTermBase xterm) {
+    return new TerminalSubscriber<>(xterm, Function.identity());
+  }
+
+  /**
+   * Sets the number of items requested at a time. This method must be called before the
+   * subscription starts.
+   *
+   * @throws IllegalArgumentException if {@code batchSize} is not positive
+   */
+  public TerminalSubscriber<T> withBatchSize(int batchSize) {
+    if (batchSize <= 0) {
+      throw new IllegalArgumentException("batchSize must be positive");
+    }
+    this.batchSize = batchSize;
+    return this;
+  }
+
+  /** Sets the text that is written when the publisher completes. By default nothing is written. */
+  public TerminalSubscriber<T> withCompletionTrailer(String trailer) {
+    completionTrailer = trailer;
+    return this;
+  }
+
+  /**
+   * Sets a function that returns the text written when the publisher fails. By default, the string
+   * representation of the error is written on its own line.
+   */
+  public TerminalSubscriber<T> withErrorTrailer(Function<? super Throwable, String> trailer) {
+    errorTrailer = Objects.requireNonNull(trailer);
+    return this;
+  }
+
+  @Override
+  public void onSubscribe(Flow.Subscription subscription) {
+    if (this.subscription != null) {
+      subscription.cancel();
+      return;
+    }
+    this.subscription = subscription;
+    access(() -> {
+      releaseRegistration = xterm.getFlowControl().addReleaseListener(this::requestMore);
+      requestMore();
+    });
+  }
+
+  @Override
+  public void onNext(T item) {
+    outstanding.decrementAndGet();
+    queue.add(encoder.apply(item));
+    scheduleDrain();
+  }
+
+  @Override
+  public void onError(Throwable throwable) {
+    error = Objects.requireNonNull(throwable);
+    done = true;
+    scheduleDrain();
+  }
+
+  @Override
+  public void onComplete() {
+    done = true;
+    scheduleDrain();
+  }
+
+  private void scheduleDrain() {
+    if (drainScheduled.compareAndSet(false, true)) {
+      access(this::drain);
+    }
+  }
+
+  private void access(Runnable task) {
+    try {
+      ui.access(task::run);
+    } catch (UIDetachedException e) {
+      cancel();
+    }
+  }
+
+  /** Cancels the subscription, and stops listening for output released by the client. */
+  private void cancel() {
+    subscription.cancel();
+    Registration registration = releaseRegistration;
+    if (registration != null) {
+      registration.remove();
+    }
+  }
+
+  private void drain() {
+    drainScheduled.set(false);
+    if (terminated) {
+      return;
+    }
+
+    ByteArrayOutputStream batch = new ByteArrayOutputStream();
+    for (byte[] chunk; (chunk = queue.poll()) != null;) {
+      batch.writeBytes(chunk);
+    }
+    if (batch.size() > 0) {
+      xterm.getFlowControl().reserve(batch.size());
+      xterm.writeAcknowledged(batch.toByteArray());
+    }
+
+    if (done && queue.isEmpty()) {
+      terminated = true;
+      releaseRegistration.remove();
+      String trailer = error != null ? errorTrailer.apply(error) : completionTrailer;
+      if (trailer != null) {
+        xterm.writeBulk(trailer);
+      }
+    } else {
+      requestMore();
+    }
+  }
+
+  private void requestMore() {
+    if (!terminated && !done && outstanding.get() == 0 && queue.isEmpty()
+        && xterm.getFlowControl().hasCapacity(1)) {
+      outstanding.addAndGet(batchSize);
+      subscription.request(batchSize);
+    }
+  }
+
+}
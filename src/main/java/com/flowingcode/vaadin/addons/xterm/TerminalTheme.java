@@ -22,8 +22,11 @@ package com.flowingcode.vaadin.addons.xterm;
 import elemental.json.Json;
 import elemental.json.JsonObject;
 import elemental.json.JsonValue;
+import java.io.Serializable;
 import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
 import java.lang.reflect.UndeclaredThrowableException;
+import java.util.Arrays;
 import java.util.Optional;
 import lombok.AccessLevel;
 import lombok.AllArgsConstructor;
@@ -32,11 +35,12 @@ import lombok.With;
 import lombok.experimental.FieldDefaults;
 
 /** The color theme of the terminal. */
+@SuppressWarnings("serial")
 @FieldDefaults(level = AccessLevel.PRIVATE)
 @With
 @AllArgsConstructor(access = AccessLevel.PRIVATE)
 @NoArgsConstructor
-public final class TerminalTheme {
+public final class TerminalTheme implements Serializable {
 
   /** Set the default foreground color */
   String foreground;
@@ -101,19 +105,31 @@ public final class TerminalTheme {
   /** ANSI bright white (eg. `\x1b[1;37m`) */
   String brightWhite;
 
+  /** The color fields, in declaration order. */
+  private static final Field[] FIELDS = Arrays.stream(TerminalTheme.class.getDeclaredFields())
+      .filter(field -> field.getType() == String.class && !Modifier.isStatic(field.getModifiers()))
+      .toArray(Field[]::new);
+
+  /** The theme as a JSON object. Since themes are immutable, it is computed once. */
+  private volatile JsonObject $json;
+
+  /** Returns the theme as a JSON object. The returned object must not be modified. */
   JsonObject asJsonObject() {
-    JsonObject obj = Json.createObject();
-    for (Field field : this.getClass().getDeclaredFields()) {
-      try {
-        obj.put(
-            field.getName(),
-            Optional.ofNullable((String) field.get(this))
-                .<JsonValue>map(Json::create)
-                .orElseGet(Json::createNull));
-      } catch (Exception e) {
-        throw new UndeclaredThrowableException(e);
+    if ($json == null) {
+      JsonObject obj = Json.createObject();
+      for (Field field : FIELDS) {
+        try {
+          obj.put(
+              field.getName(),
+              Optional.ofNullable((String) field.get(this))
+                  .<JsonValue>map(Json::create)
+                  .orElseGet(Json::createNull));
+        } catch (Exception e) {
+          throw new UndeclaredThrowableException(e);
+        }
       }
+      $json = obj;
     }
-    return obj;
+    return $json;
   }
 }
@@ -0,0 +1,97 @@
+/*-
+ * #%L
+ * XTerm Console Addon
+ * %%
+ * Copyright (C) 2020 - 2026 Flowing Code
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.flowingcode.vaadin.addons.xterm;
+
+import com.vaadin.flow.function.SerializableFunction;
+import elemental.json.JsonNull;
+import elemental.json.JsonValue;
+import java.io.Serializable;
+import java.util.Objects;
+
+/**
+ * A value that can be read from the client-side terminal with a {@link TerminalQuery}.
+ *
+ * @param <T> the type of the value
+ */
+@SuppressWarnings("serial")
+public final class TerminalValue<T> implements Serializable {
+
+  /** Whether the terminal has a selection. */
+  public static final TerminalValue<Boolean> HAS_SELECTION =
+      new TerminalValue<>("this.terminal.hasSelection()", JsonValue::asBoolean);
+
+  /** The selected text, or an empty string if there is no selection. */
+  public static final TerminalValue<String> SELECTION =
+      new TerminalValue<>("this.terminal.getSelection()", JsonValue::asString);
+
+  /** The number of columns of the terminal. */
+  public static final TerminalValue<Integer> COLUMNS =
+      new TerminalValue<>("this.terminal.cols", TerminalValue::asInteger);
+
+  /** The number of rows of the terminal. */
+  public static final TerminalValue<Integer> ROWS =
+      new TerminalValue<>("this.terminal.rows", TerminalValue::asInteger);
+
+  /** The column of the cursor, relative to the viewport. */
+  public static final TerminalValue<Integer> CURSOR_X =
+      new TerminalValue<>("this.terminal.buffer.active.cursorX", TerminalValue::asInteger);
+
+  /** The row of the cursor, relative to the viewport. */
+  public static final TerminalValue<Integer> CURSOR_Y =
+      new TerminalValue<>("this.terminal.buffer.active.cursorY", TerminalValue::asInteger);
+
+  /** The text in the current line. This value requires {@link ITerminalConsole}. */
+  public static final TerminalValue<String> CURRENT_LINE =
+      new TerminalValue<>("this.currentLine", JsonValue::asString);
+
+  private final String expression;
+
+  private final SerializableFunction<JsonValue, T> mapping;
+
+  private TerminalValue(String expression, SerializableFunction<JsonValue, T> mapping) {
+    this.expression = expression;
+    this.mapping = mapping;
+  }
+
+  /**
+   * Creates a value that is read by evaluating a JavaScript expression. In the expression,
+   * {@code this} refers to the terminal element.
+   *
+   * @param expression a JavaScript expression
+   * @param mapping a function that converts the result of the expression
+   */
+  public static <T> TerminalValue<T> of(String expression,
+      SerializableFunction<JsonValue, T> mapping) {
+    return new TerminalValue<>(Objects.requireNonNull(expression), Objects.requireNonNull(mapping));
+  }
+
+  String getExpression() {
+    return expression;
+  }
+
+  T map(JsonValue json) {
+    return json == null || json instanceof JsonNull ? null : mapping.apply(json);
+  }
+
+  private static Integer asInteger(JsonValue json) {
+    return (int) json.asNumber();
+  }
+
+}
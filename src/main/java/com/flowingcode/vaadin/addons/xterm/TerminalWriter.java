@@ -0,0 +1,209 @@
+/*-
+ * #%L
+ * XTerm Console Addon
+ * %%
+ * Copyright (C) 2020 - 2026 Flowing Code
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.flowingcode.vaadin.addons.xterm;
+
+import com.vaadin.flow.component.UI;
+import com.vaadin.flow.component.UIDetachedException;
+import java.io.IOException;
+import java.io.Writer;
+import java.time.Duration;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * A thread-safe writer that delivers text to a terminal.
+ * <p>
+ * Any number of threads may write concurrently: text is appended to a lock-free queue, which is
+ * drained by a single {@link UI#access(com.vaadin.flow.server.Command) UI.access} task per flush
+ * interval, and written to the {@linkplain XTermBase#writeBulk(String) bulk lane} of the terminal.
+ * Writing never takes the session lock, and
+ * it never blocks unless the terminal has an {@linkplain XTermBase#setOutputGovernor output
+ * governor} with the {@link OutputGovernor.Policy#BLOCK BLOCK} policy. Delivery from background
+ * threads requires server push to be enabled.
+ * </p>
+ * <p>
+ * Unlike other writers, this class does not synchronize on {@link Writer#lock}. Text written by a
+ * single call is never interleaved with text written by other threads.
+ * </p>
+ *
+ * @see XTermBase#getTerminalWriter()
+ * @see PreserveStateAddon#getTerminalWriter()
+ */
+public final class TerminalWriter extends Writer {
+
+  private static final Duration DEFAULT_FLUSH_INTERVAL = Duration.ofMillis(50);
+
+  private final UI ui;
+
+  private final XTermBase xterm;
+
+  private final Consumer<String> sink;
+
+  private final Queue<String> queue = new ConcurrentLinkedQueue<>();
+
+  private final AtomicBoolean drainScheduled = new AtomicBoolean();
+
+  private volatile long flushIntervalMillis = DEFAULT_FLUSH_INTERVAL.toMillis();
+
+  private volatile boolean closed;
+
+  /**
+   * Creates a writer that delivers text to the given terminal, in the context of the given UI.
+   *
+   * @param ui the UI the terminal is attached to
+   * @param xterm the terminal component
+   * @param sink the target of the writes, which writes to the bulk lane of {@code xterm}
+   */
+  TerminalWriter(UI ui, XTermBase xterm, Consumer<String> sink) {
+    this.ui = Objects.requireNonNull(ui);
+    this.xterm = Objects.requireNonNull(xterm);
+    this.sink = Objects.requireNonNull(sink);
+  }
+
+  /** Returns the UI in whose context the output is delivered. */
+  UI getUI() {
+    return ui;
+  }
+
+  /**
+   * Sets the interval between deliveries. Text written within an interval is delivered as a single
+   * payload at the end of the interval. A zero interval delivers the text as soon as possible. The
+   * default interval is 50 milliseconds.
+   */
+  public void setFlushInterval(Duration interval) {
+    if (interval.isNegative()) {
+      throw new IllegalArgumentException("interval must not be negative");
+    }
+    flushIntervalMillis = interval.toMillis();
+  }
+
+  /** Returns the interval between deliveries. */
+  public Duration getFlushInterval() {
+    return Duration.ofMillis(flushIntervalMillis);
+  }
+
+  @Override
+  public void write(int c) throws IOException {
+    enqueue(String.valueOf((char) c));
+  }
+
+  @Override
+  public void write(char[] cbuf, int off, int len) throws IOException {
+    enqueue(new String(cbuf, off, len));
+  }
+
+  @Override
+  public void write(String str) throws IOException {
+    enqueue(str);
+  }
+
+  @Override
+  public void write(String str, int off, int len) throws IOException {
+    enqueue(str.substring(off, off + len));
+  }
+
+  @Override
+  public TerminalWriter append(CharSequence csq) throws IOException {
+    enqueue(String.valueOf(csq));
+    return this;
+  }
+
+  /** Writes {@code line} followed by a line break. */
+  public void println(String line) throws IOException {
+    enqueue(line + "\r\n");
+  }
+
+  /** Delivers the queued text without waiting for the end of the flush interval. */
+  @Override
+  public void flush() throws IOException {
+    ensureOpen();
+    if (!queue.isEmpty()) {
+      access();
+    }
+  }
+
+  /** Delivers the queued text and closes the writer. */
+  @Override
+  public void close() {
+    if (!closed) {
+      closed = true;
+      if (!queue.isEmpty()) {
+        access();
+      }
+    }
+  }
+
+  private void ensureOpen() throws IOException {
+    if (closed) {
+      throw new IOException("Writer closed");
+    }
+  }
+
+  private void enqueue(String str) throws IOException {
+    ensureOpen();
+    if (str.isEmpty()) {
+      return;
+    }
+
+    OutputGovernor governor = xterm.getOutputGovernor();
+    if (governor != null && UI.getCurrent() != ui) {
+      governor.acquire(str.length(), OutputGovernor.countLines(str));
+    }
+
+    queue.add(str);
+    if (drainScheduled.compareAndSet(false, true)) {
+      long delay = flushIntervalMillis;
+      if (delay > 0) {
+        TerminalScheduler.schedule(this::access, delay);
+      } else {
+        access();
+      }
+    }
+  }
+
+  private void access() {
+    try {
+      ui.access(this::drain);
+    } catch (UIDetachedException e) {
+      closed = true;
+      queue.clear();
+    }
+  }
+
+  private void drain() {
+    drainScheduled.set(false);
+    String str = queue.poll();
+    if (str == null) {
+      return;
+    }
+    if (!queue.isEmpty()) {
+      StringBuilder sb = new StringBuilder(str);
+      while ((str = queue.poll()) != null) {
+        sb.append(str);
+      }
+      str = sb.toString();
+    }
+    sink.accept(str);
+  }
+
+}
@@ -0,0 +1,64 @@
+/*-
+ * #%L
+ * XTerm Console Addon
+ * %%
+ * Copyright (C) 2020 - 2026 Flowing Code
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.flowingcode.vaadin.addons.xterm;
+
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Decodes a stream of UTF-8 encoded chunks. A multi-byte sequence that is split across two chunks
+ * is kept until the next chunk arrives, instead of being replaced with U+FFFD.
+ */
+@SuppressWarnings("serial")
+final class Utf8Decoder implements Serializable {
+
+  private static final byte[] EMPTY = new byte[0];
+
+  private transient CharsetDecoder decoder;
+
+  private byte[] leftover = EMPTY;
+
+  /** Decodes {@code len} bytes from {@code data}, after any bytes left over from the last call. */
+  String decode(byte[] data, int off, int len) {
+    if (decoder == null) {
+      decoder = StandardCharsets.UTF_8.newDecoder()
+          .onMalformedInput(CodingErrorAction.REPLACE)
+          .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    }
+    ByteBuffer in;
+    if (leftover.length == 0) {
+      in = ByteBuffer.wrap(data, off, len);
+    } else {
+      in = ByteBuffer.allocate(leftover.length + len).put(leftover).put(data, off, len).flip();
+    }
+    CharBuffer out = CharBuffer.allocate(in.remaining());
+    decoder.decode(in, out, false);
+
+    // an incomplete sequence at the end of the input is kept for the next call
+    leftover = in.hasRemaining() ? new byte[in.remaining()] : EMPTY;
+    in.get(leftover);
+    return out.flip().toString();
+  }
+
+}
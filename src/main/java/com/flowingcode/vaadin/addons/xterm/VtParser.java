@@ -0,0 +1,255 @@
+/*-
+ * #%L
+ * XTerm Console Addon
+ * %%
+ * Copyright (C) 2020 - 2026 Flowing Code
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.flowingcode.vaadin.addons.xterm;
+
+import java.io.Serializable;
+
+/**
+ * A parser for the escape sequences of VT100 and xterm, after the state machine of the DEC
+ * VT500-series terminals. The parser splits its input into runs of printable characters, control
+ * characters, and escape, CSI and OSC sequences, which are passed to the methods implemented by a
+ * subclass. DCS, SOS, PM and APC strings are consumed and ignored.
+ * <p>
+ * Input may be split at any position: the state of an incomplete sequence is kept until the next
+ * call to {@link #parse(CharSequence)}.
+ * </p>
+ */
+@SuppressWarnings("serial")
+abstract class VtParser implements Serializable {
+
+  /** The maximum number of parameters of a CSI sequence. Further parameters are ignored. */
+  static final int MAX_PARAMS = 32;
+
+  /** The maximum length of an OSC string. Longer strings are truncated. */
+  private static final int MAX_OSC_LENGTH = 4096;
+
+  private static final int MAX_PARAM_VALUE = 65535;
+
+  private enum State {
+    GROUND, ESCAPE, ESCAPE_INTERMEDIATE, CSI_PARAM, CSI_IGNORE, OSC_STRING, OSC_ESCAPE, STRING,
+    STRING_ESCAPE
+  }
+
+  private State state = State.GROUND;
+
+  private final int[] params = new int[MAX_PARAMS];
+
+  private int paramCount;
+
+  private char prefix;
+
+  private char intermediate;
+
+  private final StringBuilder osc = new StringBuilder();
+
+  /** Handles the run of printable characters from {@code start} (inclusive) to {@code end}. */
+  protected abstract void print(CharSequence data, int start, int end);
+
+  /** Handles a C0 control character. */
+  protected abstract void execute(char c);
+
+  /**
+   * Handles a CSI sequence.
+   *
+   * @param prefix the private prefix ({@code ?}, {@code >}, {@code <} or {@code =}), or zero
+   * @param params the parameters, where a missing parameter is {@code -1}
+   * @param paramCount the number of parameters
+   * @param intermediate the intermediate character, or zero
+   * @param finalChar the final character
+   */
+  protected abstract void csiDispatch(char prefix, int[] params, int paramCount,
+      char intermediate, char finalChar);
+
+  /** Handles an escape sequence with an optional intermediate character (or zero). */
+  protected abstract void escDispatch(char intermediate, char finalChar);
+
+  /** Handles an OSC string. The default implementation ignores it. */
+  protected void oscDispatch(String data) {}
+
+  /** Returns the parameter at {@code index}, or {@code defaultValue} if it is missing or zero. */
+  static int param(int[] params, int paramCount, int index, int defaultValue) {
+    int value = index < paramCount ? params[index] : -1;
+    return value > 0 ? value : defaultValue;
+  }
+
+  /** Returns the parameter at {@code index}, or {@code defaultValue} if it is missing. */
+  static int paramOrZero(int[] params, int paramCount, int index, int defaultValue) {
+    int value = index < paramCount ? params[index] : -1;
+    return value >= 0 ? value : defaultValue;
+  }
+
+  /** Discards the state of any incomplete sequence. */
+  void resetParser() {
+    state = State.GROUND;
+    osc.setLength(0);
+  }
+
+  /** Parses {@code data}. */
+  void parse(CharSequence data) {
+    int n = data.length();
+    int i = 0;
+    while (i < n) {
+      char c = data.charAt(i);
+      if (state == State.GROUND && isPrintable(c)) {
+        int start = i;
+        while (++i < n && isPrintable(data.charAt(i))) {
+          // consume the run
+        }
+        print(data, start, i);
+        continue;
+      }
+      advance(c);
+      i++;
+    }
+  }
+
+  private static boolean isPrintable(char c) {
+    return c >= 0x20 && c != 0x7f && (c < 0x80 || c > 0x9f);
+  }
+
+  private void advance(char c) {
+    switch (state) {
+      case OSC_STRING:
+        if (c == 0x07) {
+          endOsc();
+        } else if (c == 0x1b) {
+          state = State.OSC_ESCAPE;
+        } else if (c >= 0x20 && osc.length() < MAX_OSC_LENGTH) {
+          osc.append(c);
+        }
+        return;
+      case OSC_ESCAPE:
+        endOsc();
+        if (c != '\\') {
+          enterEscape();
+          advance(c);
+        }
+        return;
+      case STRING:
+        if (c == 0x1b) {
+          state = State.STRING_ESCAPE;
+        } else if (c == 0x18 || c == 0x1a) {
+          state = State.GROUND;
+        }
+        return;
+      case STRING_ESCAPE:
+        state = State.GROUND;
+        if (c != '\\') {
+          enterEscape();
+          advance(c);
+        }
+        return;
+      default:
+        break;
+    }
+
+    // control characters are executed within escape and control sequences
+    if (c < 0x20 || c == 0x7f) {
+      if (c == 0x1b) {
+        enterEscape();
+      } else if (c == 0x18 || c == 0x1a) {
+        state = State.GROUND;
+      } else if (c != 0x7f) {
+        execute(c);
+      }
+      return;
+    }
+
+    switch (state) {
+      case GROUND:
+        // C1 control characters are ignored
+        break;
+      case ESCAPE:
+        if (c == '[') {
+          state = State.CSI_PARAM;
+          paramCount = 1;
+          params[0] = -1;
+          prefix = 0;
+        } else if (c == ']') {
+          state = State.OSC_STRING;
+          osc.setLength(0);
+        } else if (c == 'P' || c == 'X' || c == '^' || c == '_') {
+          state = State.STRING;
+        } else if (c < 0x30) {
+          intermediate = c;
+          state = State.ESCAPE_INTERMEDIATE;
+        } else {
+          state = State.GROUND;
+          escDispatch((char) 0, c);
+        }
+        break;
+      case ESCAPE_INTERMEDIATE:
+        if (c < 0x30) {
+          intermediate = c;
+        } else {
+          state = State.GROUND;
+          escDispatch(intermediate, c);
+        }
+        break;
+      case CSI_PARAM:
+        csiParam(c);
+        break;
+      case CSI_IGNORE:
+        if (c >= 0x40 && c <= 0x7e) {
+          state = State.GROUND;
+        }
+        break;
+      default:
+        throw new IllegalStateException();
+    }
+  }
+
+  private void enterEscape() {
+    state = State.ESCAPE;
+    intermediate = 0;
+  }
+
+  private void csiParam(char c) {
+    if (c >= '0' && c <= '9') {
+      int value = params[paramCount - 1];
+      params[paramCount - 1] = Math.min(MAX_PARAM_VALUE, Math.max(value, 0) * 10 + c - '0');
+    } else if (c == ';' || c == ':') {
+      if (paramCount < MAX_PARAMS) {
+        params[paramCount++] = -1;
+      }
+    } else if (c >= '<' && c <= '?') {
+      if (prefix == 0 && paramCount == 1 && params[0] < 0) {
+        prefix = c;
+      } else {
+        state = State.CSI_IGNORE;
+      }
+    } else if (c < 0x30) {
+      intermediate = c;
+    } else if (c >= 0x40 && c <= 0x7e) {
+      state = State.GROUND;
+      csiDispatch(prefix, params, paramCount, intermediate, c);
+    } else {
+      state = State.CSI_IGNORE;
+    }
+  }
+
+  private void endOsc() {
+    state = State.GROUND;
+    String data = osc.toString();
+    osc.setLength(0);
+    oscDispatch(data);
+  }
+
+}
@@ -31,6 +31,7 @@ public class XTerm extends XTermBase
 
   public XTerm() {
     setInsertMode(true);
+    supportInputModel();
   }
 
 }
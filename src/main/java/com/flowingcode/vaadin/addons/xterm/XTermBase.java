@@ -26,6 +26,8 @@ import com.vaadin.flow.component.HasSize;
 import com.vaadin.flow.component.Key;
 import com.vaadin.flow.component.KeyLocation;
 import com.vaadin.flow.component.KeyModifier;
+import com.vaadin.flow.component.UI;
+import com.vaadin.flow.component.UIDetachedException;
 import com.vaadin.flow.component.dependency.CssImport;
 import com.vaadin.flow.component.dependency.JsModule;
 import com.vaadin.flow.component.dependency.NpmPackage;
@@ -35,24 +37,24 @@ import com.vaadin.flow.server.Command;
 import com.vaadin.flow.shared.Registration;
 import elemental.json.Json;
 import elemental.json.JsonArray;
-import elemental.json.JsonNull;
 import elemental.json.JsonObject;
 import elemental.json.JsonValue;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.Serializable;
-import java.lang.reflect.InvocationHandler;
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
-import java.lang.reflect.ParameterizedType;
-import java.lang.reflect.Proxy;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Base64;
 import java.util.HashSet;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Locale;
+import java.util.Objects;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
-import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 import lombok.experimental.Delegate;
@@ -67,114 +69,374 @@ import lombok.experimental.ExtensionMethod;
 public abstract class XTermBase extends Component
     implements ITerminal, ITerminalOptions, HasSize, HasEnabled {
 
-  @Delegate private ITerminalOptions terminalOptionsProxy;
+  @Delegate private final ITerminalOptions terminalOptionsDelegate;
 
-  @Delegate private ITerminal terminalProxy;
+  @Delegate private final ITerminal terminalDelegate;
 
-  private List<Command> deferredCommands;
+  private DeferredCommandQueue deferredCommands;
+
+  private DeferredCommandQueue batchedCommands;
+
+  private long commandSequence;
+
+  private transient PendingQueryRegistry pendingQueries;
+
+  private Duration queryTimeout = Duration.ofSeconds(30);
+
+  private JsonObject initialOptions;
+
+  private boolean initialContentOpen = true;
+
+  /** Whether the initial options and content have been sent, so that they can no longer change. */
+  private boolean initialStateSent;
+
+  private final OutputAccumulator output = new OutputAccumulator();
+
+  private boolean coalesceWrites = true;
+
+  private int updateDepth;
+
+  private boolean outputFlushScheduled;
+
+  private JsonObject pendingOptions;
+
+  private TerminalProfile profile;
+
+  private final OutputFlowControl flowControl = new OutputFlowControl(256 * 1024);
+
+  private transient TerminalWriter terminalWriter;
+
+  private volatile OutputGovernor outputGovernor;
+
+  private boolean governorSummaryScheduled;
+
+  private RepeatedLineCollapser lineCollapser;
+
+  private TerminalModel terminalModel;
+
+  private boolean inputModelSupported;
+
+  private InputLineModel inputModel;
+
+  /**
+   * The sequence number of the user input before the custom key event that is being handled, or
+   * -1 outside key events.
+   */
+  private int keyInputSequence = -1;
+
+  /** Whether the last output was written through the bulk lane. */
+  private boolean lastOutputBulk;
+
+  /** Whether control sequences have been written through the bulk lane and may still be queued. */
+  private boolean bulkControlQueued;
+
+  private final BulkOutputQueue bulkOutput = new BulkOutputQueue(64 * 1024);
+
+  private final Utf8Decoder outputDecoder = new Utf8Decoder();
 
   private final List<TerminalAddon> addons = new ArrayList<>();
 
-  private class ProxyInvocationHandler implements InvocationHandler, Serializable {
+  /**
+   * Implements {@link ITerminal} and {@link ITerminalOptions} by sending precomputed JavaScript
+   * expressions to the client-side terminal.
+   */
+  private class TerminalDelegate implements ITerminal, ITerminalOptions {
+
+    private void call(String expression, Serializable... parameters) {
+      executeJs(expression, parameters);
+    }
+
+    private void setProperty(String name, String value) {
+      XTermBase.this.setProperty(name, value);
+    }
+
+    private String lowerCase(Enum<?> value) {
+      return value == null ? null : value.name().toLowerCase(Locale.ENGLISH);
+    }
+
+    private void setOption(String name, boolean value) {
+      XTermBase.this.setOption(name, Json.create(value));
+    }
+
+    private void setOption(String name, int value) {
+      XTermBase.this.setOption(name, Json.create(value));
+    }
+
+    private void setOption(String name, String value) {
+      XTermBase.this.setOption(name, value == null ? Json.createNull() : Json.create(value));
+    }
+
+    private void setOption(String name, JsonValue value) {
+      XTermBase.this.setOption(name, value);
+    }
 
     @Override
-    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
-      if (method.getDeclaringClass() == Object.class) {
-        return method.invoke(this, args);
+    public void blur() {
+      call("this.terminal.blur()");
+    }
+
+    @Override
+    public void focus() {
+      call("this.terminal.focus()");
+    }
+
+    @Override
+    public CompletableFuture<Boolean> hasSelection() {
+      InputLineModel model = getInputModel();
+      String selection = model != null ? model.getSelection() : null;
+      if (selection != null) {
+        return CompletableFuture.completedFuture(!selection.isEmpty());
       }
+      return query(TerminalValue.HAS_SELECTION);
+    }
 
-      Function<JsonValue, Object> mapping = getResultTypeMapper(method);
+    @Override
+    public CompletableFuture<String> getSelection() {
+      InputLineModel model = getInputModel();
+      String selection = model != null ? model.getSelection() : null;
+      if (selection != null) {
+        return CompletableFuture.completedFuture(selection);
+      }
+      return query(TerminalValue.SELECTION);
+    }
 
-      String name = method.getName();
-      CompletableFuture<JsonValue> result = invoke(mapping!=null, name, args);
+    @Override
+    public void clearSelection() {
+      call("this.terminal.clearSelection()");
+    }
 
-      if (mapping != null) {
-        return result.thenApply(json -> (json instanceof JsonNull) ? null : mapping.apply(json));
-      } else {
-        return null;
+    @Override
+    public void select(int column, int row, int length) {
+      call("this.terminal.select($0,$1,$2)", column, row, length);
+    }
+
+    @Override
+    public void selectAll() {
+      call("this.terminal.selectAll()");
+    }
+
+    @Override
+    public void selectLines(int start, int end) {
+      call("this.terminal.selectLines($0,$1)", start, end);
+    }
+
+    @Override
+    public void scrollLines(int amount) {
+      call("this.terminal.scrollLines($0)", amount);
+    }
+
+    @Override
+    public void scrollPages(int pageCount) {
+      call("this.terminal.scrollPages($0)", pageCount);
+    }
+
+    @Override
+    public void scrollToTop() {
+      call("this.terminal.scrollToTop()");
+    }
+
+    @Override
+    public void scrollToBottom() {
+      call("this.terminal.scrollToBottom()");
+    }
+
+    @Override
+    public void scrollToLine(int line) {
+      call("this.terminal.scrollToLine($0)", line);
+    }
+
+    @Override
+    public void clear() {
+      call("this.terminal.clear()");
+      if (terminalModel != null) {
+        terminalModel.clear();
       }
     }
 
-    private Function<JsonValue, Object> getResultTypeMapper(Method method) {
-      if (method.getReturnType() == Void.TYPE) {
-        return null;
-      } else if (method.getReturnType() == CompletableFuture.class) {
-        ParameterizedType type = (ParameterizedType) method.getGenericReturnType();
-        Class<?> resultType = (Class<?>) type.getActualTypeArguments()[0];
-
-        if (resultType == Void.class) {
-          return x -> null;
-        } else if (resultType == String.class) {
-          return JsonValue::asString;
-        } else if (resultType == Boolean.class) {
-          return JsonValue::asBoolean;
-        } else if (resultType == Integer.class) {
-          return json -> (int) json.asNumber();
-        } else {
-          throw new AbstractMethodError(method.toString());
-        }
-      } else {
-        throw new AbstractMethodError(method.toString());
+    @Override
+    public void write(String data) {
+      writeText(String.valueOf(data));
+    }
+
+    @Override
+    public void writeln(String data) {
+      writeText(data + "\r\n");
+    }
+
+    @Override
+    public void paste(String data) {
+      call("this.terminal.paste($0)", data);
+    }
+
+    @Override
+    public void refresh(int start, int end) {
+      call("this.terminal.refresh($0,$1)", start, end);
+    }
+
+    @Override
+    public void reset() {
+      call("this.terminal.reset()");
+      if (terminalModel != null) {
+        terminalModel.reset();
       }
     }
 
-    private CompletableFuture<JsonValue> invoke(boolean hasResult, String name, Object[] args) {
-      if (name.startsWith("set") && args.length == 1) {
-        name = name.substring("set".length());
-        name = name.substring(0, 1).toLowerCase(Locale.ENGLISH) + name.substring(1);
-        Serializable arg;
-        if (args[0] instanceof Enum) {
-          arg = ((Enum<?>) args[0]).name().toLowerCase(Locale.ENGLISH);
-        } else if (args[0] instanceof TerminalTheme) {
-          arg = ((TerminalTheme) args[0]).asJsonObject();
-        } else {
-          arg = (Serializable) args[0];
-        }
-        if (name.equals("bellStyle") || name.equals("bellSound")) {
-          return executeJs(false, "this[$0]=$1", name, arg);
-        } else {
-          return executeJs(false, "this.terminal.options[$0]=$1", name, arg);
-        }
-      } else if (args == null || args.length == 0) {
-        return executeJs(hasResult, "return this.terminal[$0]()", name);
-      } else if (args.length == 1) {
-        return executeJs(hasResult, "return this.terminal[$0]($1)", name, (Serializable) args[0]);
-      } else {
-        Serializable[] sargs = new Serializable[args.length];
-        System.arraycopy(args, 0, sargs, 0, args.length);
-        String expr =
-            IntStream.rangeClosed(1, args.length)
-                .mapToObj(i -> "$" + i)
-                .collect(Collectors.joining(","));
-        return executeJs(hasResult, "return this.terminal[$0](" + expr + ")", name, sargs);
+    @Override
+    public void resize(int columns, int rows) {
+      if (columns <= 0 || rows <= 0) {
+        throw new IllegalArgumentException("columns and rows must be positive");
+      }
+      call("this.terminal.resize($0,$1)", columns, rows);
+      if (terminalModel != null) {
+        terminalModel.resize(columns, rows);
       }
     }
-  }
 
-  private static final Class<?> optionsProxyClass;
+    @Override
+    public void setBellSound(String value) {
+      setProperty("bellSound", value);
+    }
+
+    @Override
+    public void setBellStyle(BellStyle value) {
+      setProperty("bellStyle", lowerCase(value));
+    }
+
+    @Override
+    public void setCursorBlink(boolean value) {
+      setOption("cursorBlink", value);
+    }
+
+    @Override
+    public void setCursorStyle(CursorStyle value) {
+      setOption("cursorStyle", lowerCase(value));
+    }
+
+    @Override
+    public void setCursorWidth(int value) {
+      setOption("cursorWidth", value);
+    }
+
+    @Override
+    public void setDrawBoldTextInBrightColors(boolean value) {
+      setOption("drawBoldTextInBrightColors", value);
+    }
+
+    @Override
+    public void setFastScrollModifier(FastScrollModifier value) {
+      setOption("fastScrollModifier", lowerCase(value));
+    }
+
+    @Override
+    public void setFastScrollSensitivity(int number) {
+      setOption("fastScrollSensitivity", number);
+    }
+
+    @Override
+    public void setFontSize(int number) {
+      setOption("fontSize", number);
+    }
+
+    @Override
+    public void setFontFamily(String fontFamily) {
+      setOption("fontFamily", fontFamily);
+    }
+
+    @Override
+    public void setFontWeight(int value) {
+      setOption("fontWeight", value);
+    }
+
+    @Override
+    public void setFontWeightBold(int value) {
+      setOption("fontWeightBold", value);
+    }
+
+    @Override
+    public void setLetterSpacing(int value) {
+      setOption("letterSpacing", value);
+    }
+
+    @Override
+    public void setLineHeight(int value) {
+      setOption("lineHeight", value);
+    }
+
+    @Override
+    public void setMacOptionIsMeta(boolean value) {
+      setOption("macOptionIsMeta", value);
+    }
+
+    @Override
+    public void setMacOptionClickForcesSelection(boolean value) {
+      setOption("macOptionClickForcesSelection", value);
+    }
+
+    @Override
+    public void setMinimumContrastRatio(int value) {
+      setOption("minimumContrastRatio", value);
+    }
+
+    @Override
+    public void setTheme(TerminalTheme theme) {
+      setOption("theme", theme == null ? Json.createNull() : theme.asJsonObject());
+    }
+
+    @Override
+    public void setProfile(TerminalProfile profile) {
+      applyProfile(profile);
+    }
+
+    @Override
+    public void setRendererType(RendererType value) {
+      setOption("rendererType", lowerCase(value));
+    }
 
-  static {
-    optionsProxyClass =
-        Proxy.getProxyClass(
-            XTermBase.class.getClassLoader(), ITerminal.class, ITerminalOptions.class);
+    @Override
+    public void setRightClickSelectsWord(boolean value) {
+      setOption("rightClickSelectsWord", value);
+    }
+
+    @Override
+    public void setScreenReaderMode(boolean value) {
+      setOption("screenReaderMode", value);
+    }
+
+    @Override
+    public void setScrollback(int value) {
+      setOption("scrollback", value);
+      if (terminalModel != null) {
+        terminalModel.setScrollback(value);
+      }
+    }
+
+    @Override
+    public void setScrollSensitivity(int value) {
+      setOption("scrollSensitivity", value);
+    }
+
+    @Override
+    public void setTabStopWidth(int value) {
+      if (value <= 0) {
+        throw new IllegalArgumentException("width must be positive");
+      }
+      setOption("tabStopWidth", value);
+      if (terminalModel != null) {
+        terminalModel.setTabStopWidth(value);
+      }
+    }
+
+    @Override
+    public void setWordSeparator(String value) {
+      setOption("wordSeparator", value);
+    }
   }
 
   /** Constructs a new instance of {@code XTerm} */
   public XTermBase() {
-    // initialize delegate proxies
-    try {
-      Object proxy =
-          optionsProxyClass
-              .getConstructor(InvocationHandler.class)
-              .newInstance(new ProxyInvocationHandler());
-      terminalProxy = (ITerminal) proxy;
-      terminalOptionsProxy = (ITerminalOptions) proxy;
-    } catch (InstantiationException
-        | IllegalAccessException
-        | InvocationTargetException
-        | NoSuchMethodException e) {
-      throw new RuntimeException(e);
-    }
+    TerminalDelegate delegate = new TerminalDelegate();
+    terminalDelegate = delegate;
+    terminalOptionsDelegate = delegate;
 
     // the inner <div> must be in the light DOM
     Element div = new Element("div");
@@ -183,39 +445,926 @@ public abstract class XTermBase extends Component
     div.getStyle().set("height", "100%");
     getElement().appendChild(div);
 
-    deferredCommands = new LinkedList<>();
+    deferredCommands = new DeferredCommandQueue();
 
     Registration r[] = new Registration[1];
     r[0] = getElement().addEventListener("terminal-initialized", ev -> afterInitialization());
+
+    getElement()
+        .addEventListener("profile-request",
+            ev -> onProfileRequest(ev.getEventData().getString("event.detail")))
+        .addEventData("event.detail");
+    getElement()
+        .addEventListener("write-ack",
+            ev -> acknowledgeBulkOutput((long) ev.getEventData().getNumber("event.detail")))
+        .addEventData("event.detail");
+    addAttachListener(ev -> {
+      OutputScheduler.get(ev.getUI()).register(this);
+      if (deferredCommands != null) {
+        // the client reads the initial state only once, when it opens the terminal
+        ev.getUI().beforeClientResponse(this, context -> {
+          flushOutput();
+          initialStateSent = true;
+        });
+      }
+    });
+    addDetachListener(ev -> {
+      OutputScheduler.get(ev.getUI()).unregister(this);
+      initialStateSent = false;
+      bulkOutput.reset();
+      lastOutputBulk = false;
+      bulkControlQueued = false;
+      flowControl.reset();
+      if (terminalModel != null) {
+        // the client-side terminal starts afresh when it is attached again
+        terminalModel.reset();
+      }
+      keyInputSequence = -1;
+      if (inputModel != null) {
+        inputModel.reset();
+      }
+      if (pendingQueries != null) {
+        pendingQueries.cancelAll();
+      }
+    });
   }
 
-  private void afterInitialization() {
+  /** Sends the commands that were deferred until the client-side terminal is initialized. */
+  void afterInitialization() {
     if (deferredCommands != null) {
-      List<Command> deferredCommands = this.deferredCommands;
+      flushOutput();
+      DeferredCommandQueue deferredCommands = this.deferredCommands;
       this.deferredCommands = null;
-      deferredCommands.forEach(Command::execute);
+      deferredCommands.drain((expression, parameters) -> {
+        getElement().executeJs(expression, parameters);
+      });
+      // the initial state is only used when the client-side terminal is opened for the first time
+      initialOptions = null;
+      getElement().removeProperty("initialOptions");
+      getElement().removeProperty("initialContent");
     }
   }
 
-  private CompletableFuture<JsonValue> executeJs(boolean hasResult, String expression, Serializable... parameters) {
-    if (!hasResult) {
-      executeJs(expression, parameters);
-      return CompletableFuture.completedFuture(null);
-    } else if (deferredCommands == null) {
-      return getElement().executeJs(expression, parameters).toCompletableFuture();
+  /**
+   * Sends the commands that were queued before the terminal is initialized, as a single invocation
+   * that the client runs as soon as the terminal is opened, without waiting for another round-trip.
+   */
+  private void sendDeferredCommands() {
+    if (deferredCommands != null) {
+      deferredCommands.drain((expression, parameters) -> {
+        getElement().executeJs("this.whenInitialized(()=>{" + expression + "\n})", parameters);
+      });
+    }
+  }
+
+  /** Declares that the client-side terminal can report its input line and its selection. */
+  void supportInputModel() {
+    inputModelSupported = true;
+    // registered before any other key listener, so that they can use the reported input state
+    getElement().addEventListener("CustomKey", ev -> {
+      JsonObject data = ev.getEventData();
+      if (data.hasKey("event.detail.inputSequence")) {
+        keyInputSequence = (int) data.getNumber("event.detail.inputSequence");
+        if (inputModel != null) {
+          inputModel.beginKeyEvent(keyInputSequence);
+        }
+        // the key listeners of this request run before the response
+        getUI().ifPresent(ui -> ui.beforeClientResponse(this, context -> {
+          keyInputSequence = -1;
+          if (inputModel != null) {
+            inputModel.endKeyEvent();
+          }
+        }));
+      }
+    }).addEventData("event.detail.inputSequence");
+  }
+
+  /**
+   * Returns the model of the input line and the selection reported by the client, or {@code null}
+   * if the client-side terminal does not report them. The client is asked to report them from the
+   * first call on, so that key listeners can read them without a round-trip while no command has
+   * been sent since the last report.
+   */
+  InputLineModel getInputModel() {
+    if (inputModel == null && inputModelSupported) {
+      inputModel = new InputLineModel();
+      if (keyInputSequence >= 0) {
+        inputModel.beginKeyEvent(keyInputSequence);
+      }
+      getElement()
+          .addEventListener("input-state", ev -> inputModel.update(
+              (int) ev.getEventData().getNumber("event.detail.generation"),
+              (int) ev.getEventData().getNumber("event.detail.input"),
+              ev.getEventData().getString("event.detail.line"),
+              ev.getEventData().getString("event.detail.selection")))
+          .addEventData("event.detail.generation")
+          .addEventData("event.detail.input")
+          .addEventData("event.detail.line")
+          .addEventData("event.detail.selection");
+      // the commands sent before are not covered by the initial generation
+      advanceInputGeneration();
+    }
+    return inputModel;
+  }
+
+  /** Marks the input model out of sync, because output or a command is about to be sent. */
+  private void invalidateInputModel() {
+    if (inputModel != null) {
+      advanceInputGeneration();
+    }
+  }
+
+  private void advanceInputGeneration() {
+    if (deferredCommands == null && inputModel.invalidate()) {
+      // the generation can be advanced again at the end of the response, see endResponse
+      scheduleOutputFlush();
+      // this is not a command, so it does not prevent queries from being shared
+      int generation = inputModel.getGeneration();
+      if (batchedCommands != null) {
+        batchedCommands.add(InputLineModel.SET_GENERATION, generation);
+      } else {
+        getElement().executeJs(InputLineModel.SET_GENERATION, generation);
+      }
+    }
+  }
+
+  /** Returns a new query for reading several values from the client-side terminal at once. */
+  public TerminalQuery query() {
+    return new TerminalQuery(this);
+  }
+
+  /** Reads a single value from the client-side terminal. */
+  public <T> CompletableFuture<T> query(TerminalValue<T> value) {
+    return query().with(value).fetch().thenApply(result -> result.get(value));
+  }
+
+  /**
+   * Evaluates a JavaScript expression in the client-side terminal, once it is initialized. If an
+   * identical expression without parameters is still in flight, and no command has been sent since,
+   * its result is shared.
+   */
+  CompletableFuture<JsonValue> fetch(String expression, Serializable... parameters) {
+    flushOutput();
+    if (pendingQueries == null) {
+      pendingQueries = new PendingQueryRegistry();
+    }
+    String key = parameters.length == 0 ? expression : null;
+    CompletableFuture<JsonValue> pending = pendingQueries.get(key, commandSequence);
+    if (pending != null) {
+      return pending;
+    }
+
+    // the query must run after the commands that are already queued
+    sendBatchedCommands();
+    CompletableFuture<JsonValue> result;
+    if (deferredCommands == null) {
+      result = getElement().executeJs("return " + expression, parameters).toCompletableFuture();
     } else {
-      throw new IllegalStateException("Terminal is not initialized");
+      sendDeferredCommands();
+      result = getElement().executeJs(
+          "return new Promise(resolve=>this.whenInitialized(()=>resolve(" + expression + ")))",
+          parameters).toCompletableFuture();
     }
+
+    pendingQueries.register(key, commandSequence, result, getUI().orElse(null), queryTimeout);
+    return result;
+  }
+
+  /**
+   * Sets how long a query waits for the client. A query that is not answered in time completes
+   * exceptionally with a {@link java.util.concurrent.TimeoutException}. Pending queries are
+   * cancelled when the terminal is detached, regardless of the timeout. The default timeout is 30
+   * seconds.
+   *
+   * @param timeout the timeout, or {@code null} for waiting until the terminal is detached
+   */
+  public void setQueryTimeout(Duration timeout) {
+    queryTimeout = timeout;
+  }
+
+  /** Returns how long a query waits for the client, or {@code null} if there is no timeout. */
+  public Duration getQueryTimeout() {
+    return queryTimeout;
+  }
+
+  /** Returns the number of queries that are waiting for the client. */
+  public int getPendingQueryCount() {
+    return pendingQueries == null ? 0 : pendingQueries.size();
   }
 
   protected void executeJs(String expression, Serializable... parameters) {
-    if (deferredCommands == null) {
+    flushOutput();
+    sendJs(expression, parameters);
+  }
+
+  /** Executes the given JavaScript expression, without flushing the pending output first. */
+  private void sendJs(String expression, Serializable... parameters) {
+    commandSequence++;
+    invalidateInputModel();
+    if (deferredCommands == null && batchedCommands != null) {
+      batchedCommands.add(expression, parameters);
+    } else if (deferredCommands == null) {
       getElement().executeJs(expression, parameters);
+    } else if (expression.equals(DeferredCommandQueue.SET_OPTIONS) && !initialStateSent) {
+      addInitialOptions((JsonObject) parameters[0]);
+    } else if (expression.equals(DeferredCommandQueue.WRITE) && initialContentOpen
+        && !initialStateSent) {
+      String content = getElement().getProperty("initialContent", "");
+      getElement().setProperty("initialContent", content + parameters[0]);
     } else {
-      deferredCommands.add(() -> getElement().executeJs(expression, parameters));
+      // output written after this command must not be written before it
+      initialContentOpen &= DeferredCommandQueue.isAssignment(expression);
+      deferredCommands.add(expression, parameters);
+      scheduleOutputFlush();
     }
   }
 
+  /**
+   * Merges {@code options} into the options that the client-side terminal is configured with
+   * before it is opened.
+   */
+  private void addInitialOptions(JsonObject options) {
+    JsonObject merged = Json.createObject();
+    for (JsonObject source : new JsonObject[] {initialOptions, options}) {
+      if (source != null) {
+        for (String key : source.keys()) {
+          merged.put(key, source.<JsonValue>get(key));
+        }
+      }
+    }
+    initialOptions = merged;
+    getElement().setPropertyJson("initialOptions", merged);
+  }
+
+  private void writeText(String data) {
+    data = filterOutput(data, false);
+    if (!data.isEmpty()) {
+      appendOutput(data);
+      flushUnlessCoalescing();
+    }
+  }
+
+  /** Passes text output through the repeated line collapser and the output governor. */
+  private String filterOutput(String data, boolean bulk) {
+    if (lineCollapser != null) {
+      data = lineCollapser.filter(data, bulk);
+      if (lineCollapser.hasWithheld()) {
+        // the withheld output is released at the end of the response
+        scheduleOutputFlush();
+      }
+    }
+    return governOutput(data);
+  }
+
+  private String governOutput(String data) {
+    OutputGovernor governor = outputGovernor;
+    if (governor != null && !data.isEmpty()) {
+      data = governor.filter(data);
+      scheduleGovernorSummary(governor);
+    }
+    return data;
+  }
+
+  private boolean hasOutputFilters() {
+    return lineCollapser != null || outputGovernor != null;
+  }
+
+  /** Passes UTF-8 encoded output through the repeated line collapser and the output governor. */
+  private byte[] filterOutput(byte[] data, int off, int len, boolean bulk) {
+    String text = filterOutput(outputDecoder.decode(data, off, len), bulk);
+    return text.getBytes(StandardCharsets.UTF_8);
+  }
+
+  private void scheduleGovernorSummary(OutputGovernor governor) {
+    if (!governorSummaryScheduled && governor.hasPendingSummary()) {
+      getUI().ifPresent(ui -> {
+        governorSummaryScheduled = true;
+        TerminalScheduler.schedule(() -> {
+          try {
+            ui.access(this::writeGovernorSummary);
+          } catch (UIDetachedException e) {
+            // the terminal is gone
+          }
+        }, 1000);
+      });
+    }
+  }
+
+  private void writeGovernorSummary() {
+    governorSummaryScheduled = false;
+    OutputGovernor governor = outputGovernor;
+    if (governor != null) {
+      String summary = governor.summarize();
+      if (!summary.isEmpty()) {
+        appendOutput(summary);
+        flushUnlessCoalescing();
+      }
+      scheduleGovernorSummary(governor);
+    }
+  }
+
+  /**
+   * Sets an output governor that limits the rate of output of this terminal, or {@code null} for
+   * no limit. Throttled output is handled according to the {@linkplain OutputGovernor#getPolicy()
+   * policy} of the governor, whose counters describe how much output was throttled.
+   * <p>
+   * When lines are dropped, a marker with the number of suppressed lines is written when output
+   * resumes, or after one second without output.
+   * </p>
+   */
+  public void setOutputGovernor(OutputGovernor governor) {
+    outputGovernor = governor;
+  }
+
+  /** Returns the output governor of this terminal, or {@code null} if output is not limited. */
+  public OutputGovernor getOutputGovernor() {
+    return outputGovernor;
+  }
+
+  /**
+   * Sets whether consecutive identical lines of output are collapsed. When a line repeats, it is
+   * not sent again; instead, a "[last line repeated N times]" counter is written below it, and
+   * rewritten in place as the line keeps repeating. Empty lines are not collapsed. Repeated line
+   * collapsing is disabled by default.
+   * <p>
+   * While collapsing is enabled, a partial line that could still turn out to be a repetition is
+   * held back until the end of the request.
+   * </p>
+   */
+  public void setRepeatedLineCollapsingEnabled(boolean enabled) {
+    if (enabled && lineCollapser == null) {
+      lineCollapser = new RepeatedLineCollapser(true);
+    } else if (!enabled && lineCollapser != null) {
+      flushOutput();
+      lineCollapser = null;
+    }
+  }
+
+  /** Returns whether repeated line collapsing is enabled. */
+  public boolean isRepeatedLineCollapsingEnabled() {
+    return lineCollapser != null;
+  }
+
+  /**
+   * Returns the number of lines that were not sent to the client because of repeated line
+   * collapsing.
+   */
+  public long getCollapsedLineCount() {
+    return lineCollapser != null ? lineCollapser.getCollapsedLineCount() : 0;
+  }
+
+  /**
+   * Sets whether this terminal keeps a {@linkplain TerminalModel server-side model} of its
+   * contents, which is fed with the output written from the server. The model is disabled by
+   * default. When it is enabled, it starts with the default dimensions of the client-side terminal
+   * (80 columns and 24 rows) and an empty screen, and it reflects the output written since then.
+   *
+   * @see #getTerminalModel()
+   */
+  public void setTerminalModelEnabled(boolean enabled) {
+    if (enabled && terminalModel == null) {
+      terminalModel = new TerminalModel();
+    } else if (!enabled) {
+      terminalModel = null;
+    }
+  }
+
+  /**
+   * Returns the server-side model of the contents of this terminal, or {@code null} if the model
+   * is not enabled.
+   *
+   * @see #setTerminalModelEnabled(boolean)
+   */
+  public TerminalModel getTerminalModel() {
+    return terminalModel;
+  }
+
+  private void appendOutput(String data) {
+    invalidateInputModel();
+    lastOutputBulk = false;
+    if (output.isBinary()) {
+      if (updateDepth > 0) {
+        // keep the synchronized update in a single payload
+        byte[] bytes = data.getBytes(StandardCharsets.UTF_8);
+        appendOutput(bytes, 0, bytes.length);
+        return;
+      }
+      sendOutput();
+    }
+    if (terminalModel != null) {
+      terminalModel.write(data);
+    }
+    output.append(data);
+    scheduleOutputFlush();
+  }
+
+  private void appendOutput(byte[] data, int off, int len) {
+    invalidateInputModel();
+    lastOutputBulk = false;
+    if (!output.isEmpty() && !output.isBinary()) {
+      if (updateDepth > 0) {
+        // keep the synchronized update in a single payload
+        output.toBinary();
+      } else {
+        sendOutput();
+      }
+    }
+    if (terminalModel != null) {
+      terminalModel.write(data, off, len);
+    }
+    output.append(data, off, len);
+    scheduleOutputFlush();
+  }
+
+  private void scheduleOutputFlush() {
+    if (!outputFlushScheduled) {
+      outputFlushScheduled = true;
+      getElement().getNode().runWhenAttached(ui -> ui.beforeClientResponse(this, context -> {
+        outputFlushScheduled = false;
+        flushOutput();
+        sendDeferredCommands();
+        if (inputModel != null) {
+          inputModel.endResponse();
+        }
+      }));
+    }
+  }
+
+  /**
+   * Sends the writes that are pending in the output accumulator, as a single
+   * {@code terminal.write} call. This method is called automatically before any other command is
+   * sent to the client, and before the response is written. Pending option changes are sent first,
+   * then a partial line held back by repeated line collapsing is released.
+   */
+  void flushOutput() {
+    flushOptions();
+    releaseWithheldOutput();
+    sendOutput();
+    requestBulkFlush();
+  }
+
+  /**
+   * Records a change of a terminal option. Pending changes are merged, and sent to the client as a
+   * single assignment of {@code terminal.options} before any other command, so that setting several
+   * options causes one refresh of the terminal instead of one per option.
+   */
+  private void setOption(String name, JsonValue value) {
+    if (pendingOptions == null) {
+      pendingOptions = Json.createObject();
+    }
+    pendingOptions.put(name, value);
+    scheduleOutputFlush();
+  }
+
+  /**
+   * Assigns a property of the client-side element, after the pending output. Pending option changes
+   * are not sent first, since the element properties do not depend on them, so that they can still
+   * be merged with option changes that follow the assignment.
+   */
+  private void setProperty(String name, String value) {
+    releaseWithheldOutput();
+    sendOutput();
+    requestBulkFlush();
+    sendJs("this." + name + "=$0", value);
+  }
+
+  private void applyProfile(TerminalProfile profile) {
+    this.profile = Objects.requireNonNull(profile);
+    boolean define = getUI().map(ClientProfiles::get).map(p -> p.define(profile)).orElse(true);
+    executeJs("this.applyProfile($0,$1)", profile.getId(), define ? profile.asJsonObject() : null);
+  }
+
+  /** Sends the definition of the current profile again, if the client does not know about it. */
+  private void onProfileRequest(String id) {
+    if (profile != null && profile.getId().equals(id)) {
+      getUI().map(ClientProfiles::get).ifPresent(p -> p.define(profile));
+      executeJs("this.applyProfile($0,$1)", id, profile.asJsonObject());
+    }
+  }
+
+  private void flushOptions() {
+    if (pendingOptions != null) {
+      JsonObject options = pendingOptions;
+      pendingOptions = null;
+      sendJs(DeferredCommandQueue.SET_OPTIONS, options);
+    }
+  }
+
+  private void releaseWithheldOutput() {
+    if (lineCollapser != null) {
+      boolean bulk = lineCollapser.isWithheldBulk();
+      String withheld = governOutput(lineCollapser.release());
+      if (withheld.isEmpty()) {
+        // nothing to release
+      } else if (bulk) {
+        flowControl.reserve(withheld.length());
+        bulkOutput.add(withheld);
+        lastOutputBulk = true;
+      } else {
+        appendOutput(withheld);
+      }
+    }
+  }
+
+  /**
+   * Writes control sequences that bypass the output filters, after any output that the filters
+   * have withheld. The sequences are written through the lane of the last output, so that they are
+   * not sent ahead of bulk output that is still queued. Once a control sequence has been queued in
+   * the bulk lane, later control sequences follow it until the queue is drained.
+   */
+  void writeControl(String data) {
+    releaseWithheldOutput();
+    bulkControlQueued &= bulkOutput.getQueued() > 0;
+    if ((lastOutputBulk || bulkControlQueued) && bulkOutput.getQueued() > 0) {
+      bulkControlQueued = true;
+      flowControl.reserve(data.length());
+      invalidateInputModel();
+      if (terminalModel != null) {
+        terminalModel.write(data);
+      }
+      bulkOutput.add(data);
+      scheduleOutputFlush();
+    } else {
+      appendOutput(data);
+      flushUnlessCoalescing();
+    }
+  }
+
+  private void flushUnlessCoalescing() {
+    if (!coalesceWrites && updateDepth == 0) {
+      flushOutput();
+    }
+  }
+
+  /**
+   * Runs {@code updates} as a single synchronized update. The output written by {@code updates} is
+   * sent to the client as a single payload, enclosed in a synchronized update block (DEC private
+   * mode 2026), so that a complex redraw is rendered at once, without intermediate states.
+   * This is equivalent to calling {@link #beginUpdate()} before {@code updates} and
+   * {@link #endUpdate()} after it.
+   */
+  public void batch(Runnable updates) {
+    beginUpdate();
+    try {
+      updates.run();
+    } finally {
+      endUpdate();
+    }
+  }
+
+  /**
+   * Starts a synchronized update. Until the matching call to {@link #endUpdate()}, writes are
+   * accumulated into a single payload, even if {@linkplain #setWriteCoalescingEnabled(boolean)
+   * write coalescing} is disabled, and text and binary writes are merged. Other commands (such as
+   * setting options, or calls made by {@linkplain ClientTerminalAddon add-ons}) are queued in order
+   * along with the output, and the whole update is sent to the client as a single invocation.
+   * Synchronized updates may be nested.
+   */
+  public void beginUpdate() {
+    if (updateDepth++ == 0) {
+      releaseWithheldOutput();
+      appendOutput("\033[?2026h");
+      batchedCommands = new DeferredCommandQueue();
+    }
+  }
+
+  /**
+   * Ends a synchronized update started with {@link #beginUpdate()}.
+   *
+   * @throws IllegalStateException if there is no synchronized update in progress
+   */
+  public void endUpdate() {
+    if (updateDepth == 0) {
+      throw new IllegalStateException("No update in progress");
+    }
+    if (updateDepth == 1) {
+      releaseWithheldOutput();
+      appendOutput("\033[?2026l");
+    }
+    if (--updateDepth == 0) {
+      if (batchedCommands.size() > 0) {
+        flushOutput();
+      } else {
+        flushUnlessCoalescing();
+      }
+      sendBatchedCommands();
+      batchedCommands = null;
+    }
+  }
+
+  /** Sends the commands queued by the current update as a single invocation. */
+  private void sendBatchedCommands() {
+    if (batchedCommands != null) {
+      batchedCommands.drain((expression, parameters) -> {
+        getElement().executeJs(expression, parameters);
+      });
+    }
+  }
+
+  private void sendOutput() {
+    if (output.isBinary()) {
+      String data = Base64.getEncoder().encodeToString(output.drainBytes());
+      sendJs(DeferredCommandQueue.WRITE_BASE64, data);
+    } else {
+      String data = output.drain();
+      if (data != null) {
+        sendJs(DeferredCommandQueue.WRITE, data);
+      }
+    }
+  }
+
+  /** Requests the output scheduler to send the bulk output, after the interactive output. */
+  private void requestBulkFlush() {
+    if (bulkOutput.isSendable()) {
+      getUI().ifPresent(ui -> OutputScheduler.get(ui).requestFlush());
+    }
+  }
+
+  /** Returns whether there is bulk output that can be sent within the window. */
+  boolean hasSendableBulkOutput() {
+    return bulkOutput.isSendable();
+  }
+
+  /**
+   * Sends as many chunks of bulk output as the window and {@code quota} allow.
+   *
+   * @return the number of bytes sent
+   */
+  int sendBulkOutput(int quota) {
+    int sent = 0;
+    for (Object chunk; (chunk = bulkOutput.poll(quota - sent)) != null;) {
+      int ack = BulkOutputQueue.length(chunk);
+      sent += ack;
+      if (chunk instanceof String) {
+        sendJs("this.terminal.write($0,()=>this.acknowledgeWrite($1))", (String) chunk, ack);
+      } else {
+        String data = Base64.getEncoder().encodeToString((byte[]) chunk);
+        sendJs("this.writeBase64($0,$1)", data, ack);
+      }
+    }
+    return sent;
+  }
+
+  /**
+   * Returns the number of bytes (or characters, for text) of bulk output that are queued on the
+   * server, waiting for room in the window or for their turn in the {@link OutputScheduler}.
+   */
+  public long getQueuedBulkOutput() {
+    return bulkOutput.getQueued();
+  }
+
+  /** Returns how long the oldest queued chunk of bulk output has been waiting to be sent. */
+  public Duration getBulkOutputLatency() {
+    return Duration.ofNanos(bulkOutput.getLatency());
+  }
+
+  /** Handles an acknowledgement of {@code n} bytes of bulk output from the client. */
+  void acknowledgeBulkOutput(long n) {
+    bulkOutput.acknowledge(n);
+    if (!bulkOutput.isEmpty()) {
+      scheduleOutputFlush();
+    }
+    flowControl.release(n);
+  }
+
+  /**
+   * Writes raw bytes to the terminal, and requests the client to acknowledge them once they have
+   * been parsed by xterm.js.
+   */
+  void writeAcknowledged(byte[] data) {
+    byte[] admitted = hasOutputFilters() ? filterOutput(data, 0, data.length, true) : data;
+
+    // the client acknowledges the bytes that are actually sent
+    if (admitted.length < data.length) {
+      flowControl.release(data.length - admitted.length);
+    } else if (admitted.length > data.length) {
+      flowControl.reserve(admitted.length - data.length);
+    }
+    if (admitted.length > 0) {
+      invalidateInputModel();
+      if (terminalModel != null) {
+        terminalModel.write(admitted, 0, admitted.length);
+      }
+      bulkOutput.add(admitted);
+      lastOutputBulk = true;
+      scheduleOutputFlush();
+    }
+  }
+
+  /**
+   * Writes text to the terminal through the bulk lane. Bulk output is sent to the client in chunks,
+   * and only a {@linkplain #setBulkOutputWindow(int) window} of chunks may be pending
+   * acknowledgement from the client at a time. Interactive output, such as the text written with
+   * {@link #write(String)}, {@link #writeln(String)} or {@link ITerminalConsole#writePrompt()}, is
+   * sent ahead of the bulk output that is still queued on the server, so that prompts and echo
+   * remain responsive while a large output is streaming.
+   * <p>
+   * The output written through {@link #openOutputStream()}, {@link #openWriter()},
+   * {@link #getTerminalWriter()} and {@link TerminalSubscriber} always goes through the bulk lane.
+   * </p>
+   *
+   * @param data the text to write to the terminal
+   */
+  public void writeBulk(String data) {
+    data = filterOutput(data, true);
+    if (!data.isEmpty()) {
+      // bulk text is acknowledged by its length, see sendBulkOutput
+      flowControl.reserve(data.length());
+      invalidateInputModel();
+      if (terminalModel != null) {
+        terminalModel.write(data);
+      }
+      bulkOutput.add(data);
+      lastOutputBulk = true;
+      scheduleOutputFlush();
+    }
+  }
+
+  /**
+   * Sets the number of bytes (or characters, for text) of bulk output that may be pending
+   * acknowledgement from the client. This bounds the amount of bulk output that interactive output
+   * may have to wait for. The default is 64 KiB.
+   *
+   * @throws IllegalArgumentException if {@code window} is not positive
+   * @see #writeBulk(String)
+   */
+  public void setBulkOutputWindow(int window) {
+    if (window <= 0) {
+      throw new IllegalArgumentException("window must be positive");
+    }
+    bulkOutput.setWindow(window);
+    scheduleOutputFlush();
+  }
+
+  /** Returns the number of bytes of bulk output that may be pending acknowledgement. */
+  public int getBulkOutputWindow() {
+    return bulkOutput.getWindow();
+  }
+
+  /**
+   * Writes raw bytes to the terminal. The bytes are always treated as UTF-8 encoded.
+   * <p>
+   * Binary data is sent to the client as base64 and passed to xterm.js as an {@code Uint8Array},
+   * which avoids the JSON escaping of control characters (such as ANSI escape sequences) that
+   * applies to {@link #write(String)}.
+   * </p>
+   *
+   * @param data the data to write to the terminal
+   */
+  public void write(byte[] data) {
+    write(data, 0, data.length);
+  }
+
+  /**
+   * Writes {@code len} raw bytes from the specified array, starting at offset {@code off}, to the
+   * terminal.
+   *
+   * @see #write(byte[])
+   */
+  public void write(byte[] data, int off, int len) {
+    Objects.checkFromIndexSize(off, len, data.length);
+    if (hasOutputFilters()) {
+      data = filterOutput(data, off, len, false);
+      off = 0;
+      len = data.length;
+    }
+    if (len == 0) {
+      return;
+    }
+    appendOutput(data, off, len);
+    flushUnlessCoalescing();
+  }
+
+  /**
+   * Writes the remaining bytes of the given buffer to the terminal. Upon return, the buffer's
+   * position will be equal to its limit.
+   *
+   * @see #write(byte[])
+   */
+  public void write(ByteBuffer data) {
+    if (data.hasArray()) {
+      write(data.array(), data.arrayOffset() + data.position(), data.remaining());
+      data.position(data.limit());
+    } else {
+      byte[] bytes = new byte[data.remaining()];
+      data.get(bytes);
+      write(bytes);
+    }
+  }
+
+  /**
+   * Opens an output stream that writes to this terminal. The stream may be used from any thread,
+   * and it applies backpressure: when the number of bytes that have been written but not yet
+   * acknowledged by the client reaches the {@linkplain #setOutputHighWaterMark(int) high-water
+   * mark}, the calling thread is parked until the client catches up. Waiting is done with
+   * {@code java.util.concurrent} locks, so that virtual threads are not pinned.
+   * <p>
+   * The stream buffers its output, and delivers it to the client when the buffer is full or when
+   * the stream is flushed. Output written from background threads is delivered through
+   * {@link UI#access(Command)}, which requires server push to be enabled. Callers that run in the
+   * context of this terminal's UI (such as event listeners) are never parked.
+   * </p>
+   * <p>
+   * The bytes are always treated as UTF-8 encoded. Once the UI is detached, any further output
+   * fails with an {@link java.io.IOException}.
+   * </p>
+   *
+   * @return a new output stream
+   * @throws IllegalStateException if this terminal is not attached to a UI
+   */
+  public OutputStream openOutputStream() {
+    UI ui = getUI().orElseThrow(() -> new IllegalStateException("Terminal is not attached"));
+    return new TerminalOutputStream(this, ui, flowControl);
+  }
+
+  /**
+   * Opens a UTF-8 writer on top of {@link #openOutputStream()}. Output is delivered when the
+   * writer is flushed or when its buffer is full.
+   *
+   * @return a new writer
+   * @throws IllegalStateException if this terminal is not attached to a UI
+   */
+  public Writer openWriter() {
+    return new OutputStreamWriter(openOutputStream(), StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Returns a thread-safe writer for this terminal. Any number of threads may write to it
+   * concurrently, without wrapping each write in {@link UI#access(Command)}: the text is queued, and
+   * delivered once per {@linkplain TerminalWriter#setFlushInterval(java.time.Duration) flush
+   * interval}.
+   * <p>
+   * The writer is bound to the UI the terminal is attached to when this method is first called. A
+   * new writer is returned if the terminal has been attached to a different UI since then.
+   * </p>
+   *
+   * @return the writer for this terminal
+   * @throws IllegalStateException if this terminal is not attached to a UI
+   */
+  public TerminalWriter getTerminalWriter() {
+    UI ui = getUI().orElseThrow(() -> new IllegalStateException("Terminal is not attached"));
+    if (terminalWriter == null || terminalWriter.getUI() != ui) {
+      terminalWriter = new TerminalWriter(ui, this, this::writeBulk);
+    }
+    return terminalWriter;
+  }
+
+  /** Returns the flow control that tracks the acknowledged writes of this terminal. */
+  OutputFlowControl getFlowControl() {
+    return flowControl;
+  }
+
+  /**
+   * Sets the number of bytes written through {@link #openOutputStream()} or {@link #openWriter()}
+   * that may be pending acknowledgement from the client before producers are parked. The default
+   * is 256 KiB.
+   *
+   * @throws IllegalArgumentException if {@code highWaterMark} is not positive
+   */
+  public void setOutputHighWaterMark(int highWaterMark) {
+    if (highWaterMark <= 0) {
+      throw new IllegalArgumentException("highWaterMark must be positive");
+    }
+    flowControl.setHighWaterMark(highWaterMark);
+  }
+
+  /** Returns the number of bytes that may be pending acknowledgement before parking producers. */
+  public int getOutputHighWaterMark() {
+    return flowControl.getHighWaterMark();
+  }
+
+  /**
+   * Returns the number of bytes written through the {@linkplain #writeBulk(String) bulk lane} that
+   * have not been acknowledged by the client yet, including the bytes still queued on the server.
+   */
+  public long getPendingOutputBytes() {
+    return flowControl.getInFlight();
+  }
+
+  /**
+   * Sets whether consecutive calls to {@link #write(String)} and {@link #writeln(String)} are
+   * merged into a single client-side write. Write coalescing is enabled by default.
+   */
+  public void setWriteCoalescingEnabled(boolean enabled) {
+    if (!enabled) {
+      flushOutput();
+    }
+    coalesceWrites = enabled;
+  }
+
+  /** Returns whether write coalescing is enabled. */
+  public boolean isWriteCoalescingEnabled() {
+    return coalesceWrites;
+  }
+
+  /**
+   * Returns the number of calls to {@link #write(String)} and {@link #writeln(String)} that have
+   * been merged into a preceding client-side write because of write coalescing.
+   */
+  public long getCoalescedWriteCount() {
+    return output.getMergedWrites();
+  }
+
   /**
    * Add a server-side key listener. This method is equivalent to calling {@link
    * #addCustomKeyListener(DomEventListener, Key, KeyModifier...)} with a {@link KeyLocation} of
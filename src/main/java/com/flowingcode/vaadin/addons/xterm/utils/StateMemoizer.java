@@ -20,13 +20,17 @@
 package com.flowingcode.vaadin.addons.xterm.utils;
 
 import java.io.Serializable;
-import java.lang.reflect.InvocationTargetException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
-import java.util.Arrays;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Remembers the values passed to all setters. At any time you can reapply
@@ -35,8 +39,20 @@ import java.util.Objects;
 public class StateMemoizer implements Serializable {
     /**
      * Remember all calls to all setters; also remember what args were passed to those setters.
+     * The map is ordered by the time of the last call, and guarded by its own monitor.
      */
-    private final Map<String, Serializable> setterCalls = new HashMap<>();
+    private final Map<String, Serializable> setterCalls = new LinkedHashMap<>();
+    /**
+     * The setters of each delegate class, resolved once and shared by all the memoizers.
+     */
+    private static final ClassValue<Map<String, MethodHandle>> setters = new ClassValue<>() {
+        @Override
+        protected Map<String, MethodHandle> computeValue(Class<?> type) {
+            return new ConcurrentHashMap<>();
+        }
+    };
+    private static final MethodType SETTER_TYPE =
+            MethodType.methodType(void.class, Object.class, Object.class);
     /**
      * Pass-through the setters here.
      */
@@ -57,8 +73,11 @@ public class StateMemoizer implements Serializable {
         this.delegate = Objects.requireNonNull(delegate);
         proxy = Proxy.newProxyInstance(interfaces[0].getClassLoader(), interfaces, (proxy, method, args) -> {
             if (method.getName().startsWith("set") && args.length == 1) {
-                // remember the state
-                setterCalls.put(method.getName(), (Serializable) args[0]);
+                // remember the state; a repeated call moves the setter to the end
+                synchronized (setterCalls) {
+                    setterCalls.remove(method.getName());
+                    setterCalls.put(method.getName(), (Serializable) args[0]);
+                }
             }
             return method.invoke(delegate, args);
         });
@@ -74,16 +93,36 @@ public class StateMemoizer implements Serializable {
     }
 
     /**
-     * Calls all setters again on {@link #delegate}.
+     * Calls all setters again on {@link #delegate}, in the order in which they were last called.
      */
     public void apply() {
-        setterCalls.forEach((k, v) -> {
-            final Method method = Arrays.stream(delegate.getClass().getMethods()).filter(it -> it.getName().equals(k)).findAny().get();
+        final List<Map.Entry<String, Serializable>> calls;
+        synchronized (setterCalls) {
+            calls = new ArrayList<>(setterCalls.entrySet());
+        }
+        for (Map.Entry<String, Serializable> call : calls) {
+            final MethodHandle setter = setters.get(delegate.getClass())
+                    .computeIfAbsent(call.getKey(), this::findSetter);
             try {
-                method.invoke(delegate, v);
-            } catch (IllegalAccessException | InvocationTargetException e) {
+                setter.invokeExact(delegate, (Object) call.getValue());
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable e) {
                 throw new RuntimeException(e);
             }
-        });
+        }
+    }
+
+    private MethodHandle findSetter(String name) {
+        for (Method method : delegate.getClass().getMethods()) {
+            if (method.getName().equals(name) && method.getParameterCount() == 1) {
+                try {
+                    return MethodHandles.publicLookup().unreflect(method).asType(SETTER_TYPE);
+                } catch (IllegalAccessException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        }
+        throw new IllegalStateException("No setter " + name + " in " + delegate.getClass());
     }
 }
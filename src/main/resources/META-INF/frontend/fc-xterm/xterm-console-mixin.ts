@@ -25,6 +25,7 @@ export interface IConsoleMixin extends TerminalMixin {
 	insertMode: Boolean;
 	readonly currentLine: string;
 	prompt: string;
+	inputGeneration: number;
 }
 
 class ConsoleAddon extends TerminalAddon<IConsoleMixin> {
@@ -169,6 +170,36 @@ class ConsoleAddon extends TerminalAddon<IConsoleMixin> {
 			}
 		}).bind(inputHandler);
 		
+		//report the input line and the selection after user input, see InputLineModel
+		let inputPending = false;
+		let reported: any = {};
+		let reportTimeout: any;
+		let reportInputState = () => {
+			reportTimeout = undefined;
+			const detail = {
+				generation: this.$.inputGeneration,
+				input: this.$node.parsedInputSequence,
+				line: this.currentLine,
+				selection: terminal.getSelection()
+			};
+			if (detail.generation !== reported.generation || detail.input !== reported.input
+				|| detail.line !== reported.line || detail.selection !== reported.selection) {
+				reported = detail;
+				this.$node.dispatchEvent(new CustomEvent('input-state', {detail}));
+			}
+		};
+		
+		//typing and dragging a selection are reported once they pause
+		let scheduleReport = () => {
+			clearTimeout(reportTimeout);
+			reportTimeout = setTimeout(reportInputState, 150);
+		};
+		
+		let noteInput = () => {
+			this.$node.noteInput();
+			inputPending = true;
+		};
+		
 		const node = this.$node;
 		let linefeed = function() {
 			node.dispatchEvent(new CustomEvent('line', {detail: this.currentLine}));
@@ -211,6 +242,18 @@ class ConsoleAddon extends TerminalAddon<IConsoleMixin> {
 		};
 		
 		this._disposables = [
+		terminal.onData(noteInput),
+		this.$node.customKeyEventHandlers.register(ev => {noteInput(); return false;}),
+		terminal.onWriteParsed(() => {
+			if (inputPending) {
+				inputPending = false;
+				scheduleReport();
+			}
+		}),
+		//a change of the selection is numbered as input, so that it is reported before it is used
+		terminal.onSelectionChange(() => {noteInput(); scheduleReport();}),
+		{dispose: () => clearTimeout(reportTimeout)},
+		
 		terminal.parser.registerCsiHandler({prefix: '<', final: 'H'}, probe_others(cursorHome)),
 		this.$node.customKeyEventHandlers.register(ev=> ev.key=='Home' && !hasModifiers(ev), ()=> terminal.write('\x1b[<H')),
 		
@@ -295,6 +338,7 @@ export function XTermConsoleMixin<TBase extends Constructor<TerminalMixin>>(Base
 	_consoleAddon? : ConsoleAddon; 
 	escapeEnabled: Boolean;
 	prompt: string;
+	inputGeneration: number = 0;
 	
 	connectedCallback() {
 		super.connectedCallback();
@@ -325,5 +369,10 @@ export function XTermConsoleMixin<TBase extends Constructor<TerminalMixin>>(Base
 		this.node.terminal.write('', ()=>this._consoleAddon!.writePrompt());
 	}
 	
+	setInputGeneration(generation: number) {
+		//adopt the generation after the writes of the current response have been parsed
+		setTimeout(() => this.node.terminal.write('', () => this.inputGeneration = generation));
+	}
+	
  }
 }
\ No newline at end of file
@@ -19,7 +19,7 @@
  */
 import { LitElement, html, TemplateResult } from 'lit-element';
 
-import { Terminal, ITerminalAddon, IDisposable } from 'xterm';
+import { Terminal, ITerminalAddon, ITerminalOptions, IDisposable } from 'xterm';
 import { ITerminal } from 'xterm/src/browser/Types';
 
 type integer = number;
@@ -88,6 +88,9 @@ class CustomKeyEventHandlerRegistry {
   }
 
   handle(context: XTermElement, ev: KeyboardEvent) : boolean {
+    //the input before this key, which the server must have seen reported (see InputLineModel)
+    const inputSequence = context.inputSequence;
+    
     //invoke all the applicable handlers for event
 
     let listeners : CustomKeyEventHandler[] = [];
@@ -114,6 +117,7 @@ class CustomKeyEventHandlerRegistry {
 	}
 	
 	if ((ev as any).requestCustomEvent) {
+		(ev as any).inputSequence = inputSequence;
 		context.dispatchEvent(new CustomEvent('CustomKey', {detail: ev}));
 	}
 	
@@ -151,6 +155,9 @@ export abstract class TerminalAddon<T extends TerminalMixin> implements ITermina
 }
 	
 	
+//terminal profiles, shared by all the terminals in the page
+const profiles: {[id: string]: ITerminalOptions} = {};
+
 export class XTermElement extends LitElement implements TerminalMixin {
   
   terminal: Terminal;
@@ -164,6 +171,19 @@ export class XTermElement extends LitElement implements TerminalMixin {
   
   addons : Object = {};
 
+  //initial configuration and content, applied before the terminal is opened
+  initialOptions?: ITerminalOptions;
+  initialContent?: string;
+
+  private _pendingAck: integer = 0;
+
+  //sequence number of the last user input, and of the last one whose output has been parsed
+  inputSequence: integer = 0;
+  parsedInputSequence: integer = 0;
+
+  private _initialized: boolean = false;
+  private _initializedCallbacks: (() => void)[] = [];
+
   render(): TemplateResult {
     return html`
         <slot name="terminal-container" @slotchange=${this._slotchange}></slot>        
@@ -212,17 +232,38 @@ export class XTermElement extends LitElement implements TerminalMixin {
   disconnectedCallback() {
     this.terminal.dispose();
     this.terminal = new Terminal();
+    this._initialized = false;
     super.disconnectedCallback();
   }
 
   _slotchange() {
     let slot = this.shadowRoot?.querySelector("slot[name='terminal-container']") as HTMLSlotElement;
     requestAnimationFrame(()=>{
+        if (this.initialOptions) this.terminal.options = this.initialOptions;
+        if (this.initialContent) this.terminal.write(this.initialContent);
         this.terminal.open(slot.assignedNodes()[0] as HTMLElement);
+        this._initialized = true;
+        this._initializedCallbacks.splice(0).forEach(callback => callback());
         this.dispatchEvent(new CustomEvent('terminal-initialized'));
     });
   }
 
+  //numbers user input that may change the contents of the terminal
+  noteInput() : void {
+    const sequence = ++this.inputSequence;
+    //the output of the input is written by the listeners, after this method returns
+    queueMicrotask(() => this.terminal.write('', () => this.parsedInputSequence = sequence));
+  }
+
+  //runs the callback as soon as the terminal is opened
+  whenInitialized(callback: () => void) : void {
+    if (this._initialized) {
+      callback();
+    } else {
+      this._initializedCallbacks.push(callback);
+    }
+  }
+
   updated(changedProps : any) {
     if (changedProps.has('disabled')) {
       this._disabledChanged(this.disabled);
@@ -234,6 +275,40 @@ export class XTermElement extends LitElement implements TerminalMixin {
     this.terminal.write(disabled?"\x1b[?25l":"\x1b[?25h");
   }
     
+  writeBase64(data: string, ack?: integer) : void {
+    //raw bytes are always treated as UTF-8 encoded
+    const binary = atob(data);
+    const bytes = new Uint8Array(binary.length);
+    for (let i=0; i<binary.length; i++) {
+      bytes[i] = binary.charCodeAt(i);
+    }
+    this.terminal.write(bytes, ack ? () => this.acknowledgeWrite(ack) : undefined);
+  }
+
+  acknowledgeWrite(n: integer) : void {
+    //acknowledgements of writes parsed in the same task are sent as a single event
+    if (!this._pendingAck) {
+      setTimeout(() => {
+        const detail = this._pendingAck;
+        this._pendingAck = 0;
+        this.dispatchEvent(new CustomEvent('write-ack', {detail}));
+      });
+    }
+    this._pendingAck += n;
+  }
+
+  applyProfile(id: string, options?: ITerminalOptions) : void {
+    if (options) {
+      profiles[id] = options;
+    }
+    if (profiles[id]) {
+      this.terminal.options = profiles[id];
+    } else {
+      //the page was reloaded, ask the server for the definition
+      this.dispatchEvent(new CustomEvent('profile-request', {detail: id}));
+    }
+  }
+
   registerCustomKeyListener(customKey: CustomKey) : integer {
     let handler : KeyboardEventHandler = (ev: KeyboardEvent) => (ev as any).requestCustomEvent = true;
     return this.customKeyEventHandlers.register(customKey, handler).id;
@@ -0,0 +1,141 @@
+/*-
+ * #%L
+ * XTerm Console Addon
+ * %%
+ * Copyright (C) 2020 - 2026 Flowing Code
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+import { Terminal, IMarker } from 'xterm'
+import { TerminalMixin, TerminalAddon } from './xterm-element';
+
+type PrintHandler = (data: Uint32Array, start: number, end: number) => void;
+
+interface SavedState {
+	x: number;
+	y: number;
+	attr: any;
+	insertMode: boolean;
+	wraparound: boolean;
+}
+
+class LiveRegionAddon extends TerminalAddon<TerminalMixin> {
+
+	__markers: {[id: number]: IMarker} = {};
+	__saved?: SavedState;
+	__discard: boolean = false;
+	
+	activateCallback(terminal: Terminal): void {
+		
+		const core = this.$core as any;
+		const inputHandler = core._inputHandler;
+		
+		//text written to a region that cannot be reached is discarded
+		const oldPrintHandler : PrintHandler = inputHandler._parser._printHandler;
+		inputHandler._parser.setPrintHandler((data: Uint32Array, start: number, end: number) => {
+			if (!this.__discard) oldPrintHandler(data, start, end);
+		});
+		
+		let mark = (params: any) => {
+			let id = params[0];
+			let buffer = inputHandler._bufferService.buffer;
+			if (buffer.x > 0) {
+				inputHandler.carriageReturn();
+				inputHandler.lineFeed();
+			}
+			this.__markers[id]?.dispose();
+			if (terminal.buffer.active.type != 'normal') return true;
+			let marker = terminal.registerMarker(0);
+			if (marker) {
+				this.__markers[id] = marker;
+				marker.onDispose(() => {
+					if (this.__markers[id] === marker) delete this.__markers[id];
+				});
+			}
+			return true;
+		};
+		
+		let jump = (params: any) => {
+			let marker = this.__markers[params[0]];
+			let buffer = inputHandler._bufferService.buffer;
+			let y = marker && terminal.buffer.active.type == 'normal' 
+				? marker.line + (params[1] || 0) - buffer.ybase : -1;
+			
+			if (!this.__saved) {
+				this.__saved = {
+					x: buffer.x,
+					y: buffer.y,
+					attr: inputHandler._curAttrData.clone(),
+					insertMode: core.coreService.modes.insertMode,
+					wraparound: core.coreService.decPrivateModes.wraparound
+				};
+			}
+			
+			this.__discard = y < 0 || y >= terminal.rows;
+			if (!this.__discard) {
+				//rows are overwritten, and clipped at the right margin
+				core.coreService.modes.insertMode = false;
+				core.coreService.decPrivateModes.wraparound = false;
+				buffer.x = 0;
+				buffer.y = y;
+				inputHandler.eraseInLine({params: [2]});
+			}
+			return true;
+		};
+		
+		let restore = () => {
+			let saved = this.__saved;
+			if (saved) {
+				let buffer = inputHandler._bufferService.buffer;
+				buffer.x = saved.x;
+				buffer.y = saved.y;
+				inputHandler._curAttrData = saved.attr;
+				core.coreService.modes.insertMode = saved.insertMode;
+				core.coreService.decPrivateModes.wraparound = saved.wraparound;
+				this.__saved = undefined;
+			}
+			this.__discard = false;
+			return true;
+		};
+		
+		let dispose = (params: any) => {
+			this.__markers[params[0]]?.dispose();
+			return true;
+		};
+		
+		this._disposables = [
+			{dispose : () => {inputHandler._parser._printHandler = oldPrintHandler;}},
+			{dispose : () => Object.values(this.__markers).forEach(m => m.dispose())},
+			terminal.parser.registerCsiHandler({prefix: '<', final: 'M'}, mark),
+			terminal.parser.registerCsiHandler({prefix: '<', final: 'J'}, jump),
+			terminal.parser.registerCsiHandler({prefix: '<', final: 'U'}, restore),
+			terminal.parser.registerCsiHandler({prefix: '<', final: 'Q'}, dispose)
+		];
+	}
+
+}
+
+type Constructor<T = {}> = new (...args: any[]) => T;
+export function XTermLiveRegionMixin<TBase extends Constructor<TerminalMixin>>(Base: TBase) {
+  return class XTermLiveRegionMixin extends Base {
+	
+	connectedCallback() {
+		super.connectedCallback();
+		let addon = new LiveRegionAddon();
+		addon.$=this;
+		this.node.terminal.loadAddon(addon);
+	}
+	
+ }
+}
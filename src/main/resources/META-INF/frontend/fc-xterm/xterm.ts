@@ -24,10 +24,11 @@ import { XTermClipboardMixin } from './xterm-clipboard-mixin';
 import { XTermConsoleMixin } from './xterm-console-mixin';
 import { XTermFitMixin } from './xterm-fit-mixin';
 import { XTermInsertFixMixin } from './xterm-insertfix-mixin';
+import { XTermLiveRegionMixin } from './xterm-live-region-mixin';
 import { XTermSelectionMixin } from './xterm-selection-mixin';
 
 @customElement('fc-xterm')
-export class XTermComponent extends XTermInsertFixMixin(XTermClipboardMixin(XTermConsoleMixin(XTermSelectionMixin(XTermFitMixin(XTermElement))))) {
+export class XTermComponent extends XTermInsertFixMixin(XTermClipboardMixin(XTermConsoleMixin(XTermSelectionMixin(XTermFitMixin(XTermLiveRegionMixin(XTermElement)))))) {
     
 }
 
@@ -0,0 +1,42 @@
+/*-
+ * #%L
+ * XTerm Console Addon
+ * %%
+ * Copyright (C) 2020 - 2026 Flowing Code
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.flowingcode.vaadin.addons.xterm;
+
+import org.junit.Before;
+
+/**
+ * Base class for tests of a single terminal, which is attached to a {@link TestUI} and initialized
+ * before each test. The invocations sent during the initialization are discarded.
+ */
+public abstract class AbstractTerminalTest {
+
+    protected TestUI ui;
+    protected XTerm xterm;
+
+    @Before
+    public void setup() {
+        ui = new TestUI();
+        xterm = new XTerm();
+        ui.add(xterm);
+        ui.initialize(xterm);
+        ui.dumpInvocations();
+    }
+
+}
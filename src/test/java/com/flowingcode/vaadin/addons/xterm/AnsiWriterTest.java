@@ -0,0 +1,82 @@
+/*-
+ * #%L
+ * XTerm Console Addon
+ * %%
+ * Copyright (C) 2020 - 2026 Flowing Code
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.flowingcode.vaadin.addons.xterm;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+
+public class AnsiWriterTest extends AbstractTerminalTest {
+
+    private AnsiWriter out;
+
+    @Override
+    @Before
+    public void setup() {
+        super.setup();
+        out = new AnsiWriter(xterm);
+    }
+
+    @Test
+    public void testOnlyChangedParametersAreSent() {
+        out.foreground(CellStyle.RED).append("a");
+        out.bold(true).append("b");
+        out.foreground(CellStyle.GREEN).append("c");
+        out.foreground(CellStyle.DEFAULT_COLOR).append("d");
+        out.underline(true).append("e");
+        assertEquals("\033[31ma\033[1mb\033[32mc\033[39md\033[4me", out.toString());
+    }
+
+    @Test
+    public void testStyleChangesAreLazy() {
+        out.append("a").bold(true).foreground(CellStyle.RED).resetStyle().append("b");
+        out.italic(true).append("").italic(false).append("c");
+        assertEquals("abc", out.toString());
+    }
+
+    @Test
+    public void testSameStyleAcrossSpans() {
+        CellStyle header = CellStyle.DEFAULT.withBold(true).withUnderline(true);
+        out.style(header).append("Name").style(header).append(' ').style(header).append("Size");
+        assertEquals("\033[1;4mName Size", out.toString());
+    }
+
+    @Test
+    public void testFlush() {
+        out.background(CellStyle.BLUE).append("x").append(42).newLine();
+        assertEquals(13, out.flush());
+        out.append("y");
+        assertEquals(6, out.length());
+        out.flush();
+        assertEquals(0, out.flush());
+        assertEquals(List.of("this.terminal.write($0) [\033[44mx42\r\n\033[m\033[44my\033[m]"),
+                ui.dumpInvocations());
+    }
+
+    @Test
+    public void testCursorAndErase() {
+        out.eraseLogicalLine().logicalLineHome().cursorColumn(0).append("$ ");
+        out.eraseLine().cursorColumn(9);
+        assertEquals("\033[<2K\033[<H\033[G$ \033[2K\033[10G", out.toString());
+    }
+
+}
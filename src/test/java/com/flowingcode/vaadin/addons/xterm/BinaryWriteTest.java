@@ -0,0 +1,83 @@
+/*-
+ * #%L
+ * XTerm Console Addon
+ * %%
+ * Copyright (C) 2020 - 2026 Flowing Code
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.flowingcode.vaadin.addons.xterm;
+
+import static org.junit.Assert.assertEquals;
+
+import elemental.json.Json;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+import org.junit.Test;
+
+public class BinaryWriteTest extends AbstractTerminalTest {
+
+    private static String base64(String s) {
+        return Base64.getEncoder().encodeToString(s.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testConsecutiveBinaryWritesAreMerged() {
+        xterm.write("foo".getBytes(StandardCharsets.UTF_8));
+        xterm.write(ByteBuffer.wrap("xbarx".getBytes(StandardCharsets.UTF_8), 1, 3));
+        assertEquals(List.of("this.writeBase64($0) [" + base64("foobar") + "]"), ui.dumpInvocations());
+        assertEquals(1, xterm.getCoalescedWriteCount());
+    }
+
+    @Test
+    public void testBinaryAndTextWritesKeepOrder() {
+        xterm.write("foo");
+        xterm.write("bar".getBytes(StandardCharsets.UTF_8));
+        xterm.write("baz");
+        assertEquals(List.of(
+                "this.terminal.write($0) [foo]",
+                "this.writeBase64($0) [" + base64("bar") + "]",
+                "this.terminal.write($0) [baz]"), ui.dumpInvocations());
+    }
+
+    @Test
+    public void testByteBufferPositionIsAdvanced() {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(3);
+        buffer.put("foo".getBytes(StandardCharsets.UTF_8)).flip();
+        xterm.write(buffer);
+        assertEquals(buffer.limit(), buffer.position());
+        assertEquals(List.of("this.writeBase64($0) [" + base64("foo") + "]"), ui.dumpInvocations());
+    }
+
+    /** Compares the size on the wire of ANSI-heavy output, as a string and as binary data. */
+    @Test
+    public void testWireSizeOfAnsiHeavyOutput() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            sb.append("\033[1;3").append(i % 8).append('m').append(i).append("\033[0m\t");
+            if (i % 10 == 9) {
+                sb.append("\033[2K\r\n");
+            }
+        }
+        String output = sb.toString();
+        assertEquals(15490, output.length());
+
+        // each escape character takes 6 characters as a JSON string, and 4/3 of a byte as base64
+        assertEquals(27192, Json.create(output).toJson().length());
+        assertEquals(20658, Json.create(base64(output)).toJson().length());
+    }
+
+}
@@ -0,0 +1,125 @@
+/*-
+ * #%L
+ * XTerm Console Addon
+ * %%
+ * Copyright (C) 2020 - 2026 Flowing Code
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.flowingcode.vaadin.addons.xterm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import com.vaadin.flow.component.internal.PendingJavaScriptInvocation;
+import elemental.json.Json;
+import elemental.json.JsonValue;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ClientTerminalAddonTest extends AbstractTerminalTest {
+
+    @SuppressWarnings("serial")
+    private static class CounterAddon extends ClientTerminalAddon {
+
+        CounterAddon(XTermBase xterm) {
+            super(xterm);
+        }
+
+        @Override
+        protected String getName() {
+            return "counter";
+        }
+
+        void add(int n) {
+            executeJs("this.count+=$0", n);
+        }
+
+        CompletableFuture<Integer> count() {
+            return call(json -> (int) json.asNumber(), "return this.count");
+        }
+
+        CompletableFuture<String> describe(String prefix) {
+            return call(JsonValue::asString, "return $0+this.count", prefix);
+        }
+    }
+
+    private CounterAddon addon;
+
+    @Override
+    @Before
+    public void setup() {
+        super.setup();
+        addon = new CounterAddon(xterm);
+        ui.dumpInvocations();
+    }
+
+    @Test
+    public void testCall() {
+        CompletableFuture<String> future = addon.describe("count: ");
+        List<PendingJavaScriptInvocation> invocations = ui.dumpPendingInvocations();
+        assertEquals(List.of(
+                "return (function(){return $1[0]+this.count}).apply(this.addons[$0],$1) "
+                        + "[counter, [\"count: \"]]"),
+                invocations.stream().map(TestUI::format).toList());
+        assertFalse(future.isDone());
+
+        invocations.get(0).complete(Json.create("count: 2"));
+        assertEquals("count: 2", future.join());
+    }
+
+    @Test
+    public void testCallReturningNull() {
+        CompletableFuture<Integer> future = addon.count();
+        ui.dumpPendingInvocations().get(0).complete(Json.createNull());
+        assertEquals(null, future.join());
+    }
+
+    @Test
+    public void testBatchIsSentAsSingleInvocation() {
+        xterm.batch(() -> {
+            xterm.write("foo");
+            addon.add(1);
+            addon.add(2);
+            xterm.write("bar");
+        });
+        assertEquals(List.of("(()=>{this.terminal.write($0)\n})();"
+                + "(()=>{(function(){this.count+=$2[0]}).apply(this.addons[$1],$2)\n})();"
+                + "(()=>{(function(){this.count+=$4[0]}).apply(this.addons[$3],$4)\n})();"
+                + "(()=>{this.terminal.write($5)\n})(); "
+                + "[\033[?2026hfoo, counter, [1], counter, [2], bar\033[?2026l]"),
+                ui.dumpInvocations());
+    }
+
+    @Test
+    public void testCallWithinBatchIsOrdered() {
+        xterm.batch(() -> {
+            addon.add(1);
+            addon.count();
+            addon.add(2);
+        });
+        assertEquals(List.of(
+                "(()=>{this.terminal.write($0)\n})();"
+                        + "(()=>{(function(){this.count+=$2[0]}).apply(this.addons[$1],$2)\n})(); "
+                        + "[\033[?2026h, counter, [1]]",
+                "return (function(){return this.count}).apply(this.addons[$0],$1) [counter, []]",
+                "(()=>{(function(){this.count+=$1[0]}).apply(this.addons[$0],$1)\n})();"
+                        + "(()=>{this.terminal.write($2)\n})(); "
+                        + "[counter, [2], \033[?2026l]"),
+                ui.dumpInvocations());
+    }
+
+}
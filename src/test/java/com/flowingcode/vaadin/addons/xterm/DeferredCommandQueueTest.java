@@ -0,0 +1,160 @@
+/*-
+ * #%L
+ * XTerm Console Addon
+ * %%
+ * Copyright (C) 2020 - 2026 Flowing Code
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.flowingcode.vaadin.addons.xterm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import com.flowingcode.vaadin.addons.xterm.ITerminalOptions.BellStyle;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+
+public class DeferredCommandQueueTest {
+
+    private static final String INSERT_MODE =
+            "this.whenInitialized(()=>{this.insertMode=$0\n}) [true]";
+
+    private TestUI ui;
+    private XTerm xterm;
+
+    @Before
+    public void setup() {
+        ui = new TestUI();
+        xterm = new XTerm();
+        ui.add(xterm);
+    }
+
+    @Test
+    public void testWritesAreInitialContent() {
+        xterm.setWriteCoalescingEnabled(false);
+        xterm.writeln("Welcome");
+        xterm.writeln("to the terminal");
+        xterm.write("$ ");
+        assertEquals(List.of(INSERT_MODE), ui.dumpInvocations());
+        assertEquals("Welcome\r\nto the terminal\r\n$ ",
+                xterm.getElement().getProperty("initialContent"));
+    }
+
+    @Test
+    public void testOptionsAreInitialOptions() {
+        xterm.setCursorBlink(true);
+        xterm.setFontSize(12);
+        xterm.setFontSize(14);
+        xterm.scrollToBottom();
+        xterm.setTabStopWidth(4);
+        ui.dumpInvocations();
+        assertEquals("{\"cursorBlink\":true,\"fontSize\":14,\"tabStopWidth\":4}",
+                xterm.getElement().getPropertyRaw("initialOptions").toString());
+    }
+
+    @Test
+    public void testStateAfterFirstResponseIsQueued() {
+        xterm.writeln("Welcome");
+        xterm.setCursorBlink(true);
+        assertEquals(List.of(INSERT_MODE), ui.dumpInvocations());
+
+        // the client may open the terminal before terminal-initialized reaches the server
+        xterm.write("$ ");
+        xterm.setFontSize(14);
+        assertEquals(List.of("this.whenInitialized(()=>{"
+                + "(()=>{this.terminal.options=$0\n})();"
+                + "(()=>{this.terminal.write($1)\n})();\n}) "
+                + "[{\"fontSize\":14}, $ ]"), ui.dumpInvocations());
+        assertEquals("Welcome\r\n", xterm.getElement().getProperty("initialContent"));
+        assertEquals("{\"cursorBlink\":true}",
+                xterm.getElement().getPropertyRaw("initialOptions").toString());
+    }
+
+    @Test
+    public void testCommandsAreSentAsOneInvocation() {
+        xterm.writeln("Welcome");
+        xterm.scrollToBottom();
+        xterm.setBellStyle(BellStyle.SOUND);
+        xterm.writeln("bye");
+        xterm.setBellStyle(BellStyle.NONE);
+        xterm.write("foo".getBytes(StandardCharsets.UTF_8));
+        xterm.write("bar".getBytes(StandardCharsets.UTF_8));
+        assertEquals(List.of("this.whenInitialized(()=>{"
+                + "(()=>{this.insertMode=$0\n})();"
+                + "(()=>{this.terminal.scrollToBottom()\n})();"
+                + "(()=>{this.bellStyle=$1\n})();"
+                + "(()=>{this.terminal.write($2)\n})();"
+                + "(()=>{this.bellStyle=$3\n})();"
+                + "(()=>{this.writeBase64($4)\n})();\n}) "
+                + "[true, sound, bye\r\n, none, Zm9vYmFy]"), ui.dumpInvocations());
+        assertEquals("Welcome\r\n", xterm.getElement().getProperty("initialContent"));
+    }
+
+    @Test
+    public void testOnlyAdjacentAssignmentsAreCollapsed() {
+        xterm.writeln("Welcome");
+        xterm.scrollToBottom();
+        xterm.setBellStyle(BellStyle.NONE);
+        xterm.setBellStyle(BellStyle.SOUND);
+        xterm.write("\007");
+        xterm.setBellStyle(BellStyle.NONE);
+        assertEquals(List.of("this.whenInitialized(()=>{"
+                + "(()=>{this.insertMode=$0\n})();"
+                + "(()=>{this.terminal.scrollToBottom()\n})();"
+                + "(()=>{this.bellStyle=$1\n})();"
+                + "(()=>{this.terminal.write($2)\n})();"
+                + "(()=>{this.bellStyle=$3\n})();\n}) "
+                + "[true, sound, \007, none]"), ui.dumpInvocations());
+    }
+
+    @Test
+    public void testBinaryWritesAreMerged() {
+        DeferredCommandQueue queue = new DeferredCommandQueue();
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            byte[] data = ("line " + i + "\r\n").getBytes(StandardCharsets.UTF_8);
+            queue.add(DeferredCommandQueue.WRITE_BASE64, Base64.getEncoder().encodeToString(data));
+            expected.append("line ").append(i).append("\r\n");
+        }
+        assertEquals(1, queue.size());
+
+        List<Serializable> parameters = new ArrayList<>();
+        queue.drain((expression, params) -> parameters.addAll(Arrays.asList(params)));
+        byte[] data = Base64.getDecoder().decode((String) parameters.get(0));
+        assertEquals(expected.toString(), new String(data, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testInitialization() {
+        xterm.writeln("Welcome");
+        xterm.setCursorBlink(true);
+        xterm.scrollToBottom();
+        ui.initialize(xterm);
+        assertEquals(List.of("(()=>{this.insertMode=$0\n})();"
+                + "(()=>{this.terminal.scrollToBottom()\n})(); [true]"), ui.dumpInvocations());
+        assertFalse(xterm.getElement().hasProperty("initialContent"));
+        assertFalse(xterm.getElement().hasProperty("initialOptions"));
+
+        xterm.writeln("after");
+        assertEquals(List.of("this.terminal.write($0) [after\r\n]"), ui.dumpInvocations());
+    }
+
+}
@@ -0,0 +1,106 @@
+/*-
+ * #%L
+ * XTerm Console Addon
+ * %%
+ * Copyright (C) 2020 - 2026 Flowing Code
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.flowingcode.vaadin.addons.xterm;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assume.assumeTrue;
+
+import java.lang.management.ManagementFactory;
+import java.util.function.UnaryOperator;
+import org.junit.Test;
+
+public class ExpressionCacheTest {
+
+    private static final String EXPRESSION = "this.fit($0, $1); return $2;";
+
+    @Test
+    public void testCompile() {
+        assertEquals("(function(){this.fit($1[0], $1[1]); return $1[2];}).apply(this.addons[$0],$1)",
+                ClientTerminalAddon.compile(EXPRESSION));
+    }
+
+    @Test
+    public void testTemplatesAreReused() {
+        ExpressionCache cache = new ExpressionCache(ClientTerminalAddon::compile);
+        assertSame(cache.get(EXPRESSION), cache.get(new String(EXPRESSION)));
+    }
+
+    @Test
+    public void testCacheIsBounded() {
+        ExpressionCache cache = new ExpressionCache(ClientTerminalAddon::compile);
+        String first = cache.get("return 0;");
+        String second = cache.get("return 1;");
+        for (int i = 2; i < ExpressionCache.MAX_SIZE; i++) {
+            cache.get("return " + i + ";");
+        }
+        assertEquals(ExpressionCache.MAX_SIZE, cache.size());
+
+        // using the first template makes the second one the least recently used
+        assertSame(first, cache.get("return 0;"));
+        cache.get("return " + ExpressionCache.MAX_SIZE + ";");
+        assertEquals(ExpressionCache.MAX_SIZE, cache.size());
+
+        assertSame(first, cache.get("return 0;"));
+        // the second template has been evicted and is compiled again
+        assertNotSame(second, cache.get("return 1;"));
+        assertEquals(second, cache.get("return 1;"));
+        assertEquals(ExpressionCache.MAX_SIZE, cache.size());
+    }
+
+    /** Compares the bytes allocated per call with and without the cache. */
+    @Test
+    public void benchmarkAllocation() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+        assumeTrue(threads.isThreadAllocatedMemorySupported());
+
+        ExpressionCache cache = new ExpressionCache(ClientTerminalAddon::compile);
+        UnaryOperator<String> uncached = ClientTerminalAddon::compile;
+        UnaryOperator<String> cached = cache::get;
+
+        int iterations = 100_000;
+        long uncachedBytes = measure(threads, uncached, iterations);
+        long cachedBytes = measure(threads, cached, iterations);
+        assertThat(cachedBytes, lessThan(uncachedBytes / 10));
+    }
+
+    private static long measure(com.sun.management.ThreadMXBean threads,
+            UnaryOperator<String> compiler, int iterations) {
+        long id = Thread.currentThread().getId();
+        int hash = 0;
+        // warm up
+        for (int i = 0; i < iterations; i++) {
+            hash += compiler.apply(EXPRESSION).length();
+        }
+        long before = threads.getThreadAllocatedBytes(id);
+        for (int i = 0; i < iterations; i++) {
+            hash += compiler.apply(EXPRESSION).length();
+        }
+        long after = threads.getThreadAllocatedBytes(id);
+        assertThat(0, lessThan(hash));
+        return after - before;
+    }
+
+}
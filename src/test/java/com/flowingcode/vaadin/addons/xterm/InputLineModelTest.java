@@ -0,0 +1,170 @@
+/*-
+ * #%L
+ * XTerm Console Addon
+ * %%
+ * Copyright (C) 2020 - 2026 Flowing Code
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.flowingcode.vaadin.addons.xterm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.vaadin.flow.dom.DomEvent;
+import com.vaadin.flow.internal.nodefeature.ElementListenerMap;
+import elemental.json.Json;
+import elemental.json.JsonObject;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import org.junit.Test;
+
+public class InputLineModelTest extends AbstractTerminalTest {
+
+    /** Simulates a report of the input line and the selection from the client. */
+    private void report(int generation, String line, String selection) {
+        report(generation, 0, line, selection);
+    }
+
+    private void report(int generation, int input, String line, String selection) {
+        JsonObject data = Json.createObject();
+        data.put("event.detail.generation", generation);
+        data.put("event.detail.input", input);
+        data.put("event.detail.line", line);
+        data.put("event.detail.selection", selection);
+        fireEvent("input-state", data);
+    }
+
+    /** Simulates a custom key event, after the given user input. */
+    private void customKey(int inputSequence) {
+        JsonObject data = Json.createObject();
+        data.put("event.detail.inputSequence", inputSequence);
+        fireEvent("CustomKey", data);
+    }
+
+    private void fireEvent(String type, JsonObject data) {
+        xterm.getElement().getNode().getFeature(ElementListenerMap.class)
+                .fireEvent(new DomEvent(xterm.getElement(), type, data));
+    }
+
+    @Test
+    public void testCurrentLineIsQueriedUntilReported() {
+        CompletableFuture<String> line = xterm.getCurrentLine();
+        assertFalse(line.isDone());
+        assertEquals(List.of(
+                "this.setInputGeneration($0) [1]",
+                "return [this.currentLine] []"), ui.dumpInvocations());
+    }
+
+    @Test
+    public void testReportedStateIsReturnedLocally() {
+        xterm.getCurrentLine();
+        ui.dumpInvocations();
+        report(1, "foo", "oo");
+        customKey(0);
+
+        assertEquals("foo", xterm.getCurrentLine().getNow(null));
+        assertEquals("oo", xterm.getSelection().getNow(null));
+        assertTrue(xterm.hasSelection().getNow(null));
+        assertEquals(List.of(), ui.dumpInvocations());
+    }
+
+    @Test
+    public void testClientIsQueriedOutsideKeyEvents() {
+        xterm.getCurrentLine();
+        ui.dumpInvocations();
+        report(1, "foo", "oo");
+
+        // the user may have typed or selected since the last report
+        assertFalse(xterm.getCurrentLine().isDone());
+        assertFalse(xterm.getSelection().isDone());
+
+        // the key event ends with the response
+        customKey(0);
+        assertTrue(xterm.getCurrentLine().isDone());
+        ui.dumpInvocations();
+        assertFalse(xterm.getCurrentLine().isDone());
+    }
+
+    @Test
+    public void testCommandsInvalidateTheReportedState() {
+        xterm.getCurrentLine();
+        ui.dumpInvocations();
+        report(1, "foo", "");
+        xterm.write("bar");
+        assertFalse(xterm.getCurrentLine().isDone());
+        assertEquals(List.of(
+                "this.setInputGeneration($0) [2]",
+                "this.terminal.write($0) [bar]",
+                "return [this.currentLine] []"), ui.dumpInvocations());
+    }
+
+    @Test
+    public void testReportsFromOutdatedGenerationsAreIgnored() {
+        xterm.getCurrentLine();
+        ui.dumpInvocations();
+        xterm.write("bar");
+        ui.dumpInvocations();
+        report(1, "foo", "");
+        assertFalse(xterm.getCurrentLine().isDone());
+        ui.dumpInvocations();
+        report(2, "foobar", "");
+        customKey(0);
+        assertEquals("foobar", xterm.getCurrentLine().getNow(null));
+    }
+
+    @Test
+    public void testGenerationIsAdvancedOncePerResponse() {
+        xterm.getCurrentLine();
+        ui.dumpInvocations();
+        report(1, "foo", "");
+        xterm.clear();
+        xterm.focus();
+        xterm.write("bar");
+        assertEquals(List.of(
+                "this.setInputGeneration($0) [2]",
+                "this.terminal.clear() []",
+                "this.terminal.focus() []",
+                "this.terminal.write($0) [bar]"), ui.dumpInvocations());
+    }
+
+    @Test
+    public void testKeysAfterUnreportedInputAreQueried() {
+        xterm.getCurrentLine();
+        ui.dumpInvocations();
+        report(1, 3, "abc", "");
+        customKey(3);
+        assertEquals("abc", xterm.getCurrentLine().getNow(null));
+
+        // the report of the last keystrokes has not arrived yet
+        customKey(5);
+        assertFalse(xterm.getCurrentLine().isDone());
+        assertFalse(xterm.getSelection().isDone());
+        ui.dumpInvocations();
+        report(1, 5, "abcde", "");
+        customKey(5);
+        assertEquals("abcde", xterm.getCurrentLine().getNow(null));
+    }
+
+    @Test
+    public void testReportedStateIsDiscardedOnDetach() {
+        xterm.getCurrentLine();
+        ui.dumpInvocations();
+        report(1, "foo", "");
+        ui.remove(xterm);
+        assertFalse(xterm.getCurrentLine().isDone());
+    }
+
+}
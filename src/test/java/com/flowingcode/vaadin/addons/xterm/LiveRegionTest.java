@@ -0,0 +1,166 @@
+/*-
+ * #%L
+ * XTerm Console Addon
+ * %%
+ * Copyright (C) 2020 - 2026 Flowing Code
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.flowingcode.vaadin.addons.xterm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+
+public class LiveRegionTest extends AbstractTerminalTest {
+
+    private TerminalModel model;
+
+    @Override
+    @Before
+    public void setup() {
+        super.setup();
+        xterm.setTerminalModelEnabled(true);
+        model = xterm.getTerminalModel();
+        model.resize(20, 5);
+        ui.dumpInvocations();
+    }
+
+    @Test
+    public void testCreateAndUpdate() {
+        xterm.write("foo");
+        LiveRegion region = LiveRegion.create(xterm, "jobs", 2);
+        xterm.write("bar");
+        assertEquals(List.of("this.terminal.write($0) [foo\033[<0M\r\n\r\nbar]"), ui.dumpInvocations());
+
+        region.setLine(0, "job 1: running");
+        region.setLine(1, "job 2: running");
+        region.setLine(0, "job 1: done");
+        assertEquals(List.of("this.terminal.write($0) "
+                + "[\033[<0;0Jjob 1: done\033[<U\033[<0;1Jjob 2: running\033[<U]"), ui.dumpInvocations());
+
+        assertEquals("foo\njob 1: done\njob 2: running\nbar\n", model.getScreenText());
+        assertEquals(3, model.getCursorX());
+        assertEquals(3, model.getCursorY());
+    }
+
+    @Test
+    public void testRegionFollowsQueuedBulkOutput() {
+        String bulkWrite = "this.terminal.write($0,()=>this.acknowledgeWrite($1))";
+        String chunk = "a".repeat(BulkOutputQueue.CHUNK_SIZE);
+        xterm.setBulkOutputWindow(BulkOutputQueue.CHUNK_SIZE);
+        xterm.writeBulk(chunk + "b");
+        LiveRegion region = LiveRegion.create(xterm, "jobs", 1);
+        xterm.writeBulk("c");
+        region.setLine(0, "job 1");
+        xterm.write("$ ");
+
+        // the marker and the update wait for the bulk output that precedes them
+        assertEquals(List.of(
+                "this.terminal.write($0) [$ ]",
+                bulkWrite + " [" + chunk + ", " + BulkOutputQueue.CHUNK_SIZE + "]"),
+                ui.dumpInvocations());
+
+        xterm.acknowledgeBulkOutput(BulkOutputQueue.CHUNK_SIZE);
+        String rest = "b\033[<0M\r\nc\033[<0;0Jjob 1\033[<U";
+        assertEquals(List.of(bulkWrite + " [" + rest + ", " + rest.length() + "]"),
+                ui.dumpInvocations());
+    }
+
+    @Test
+    public void testOnlyChangedRowsAreRewritten() {
+        LiveRegion region = LiveRegion.create(xterm, "jobs", 3);
+        region.setLines("a", "b", "c");
+        ui.dumpInvocations();
+        region.setMaxUpdateRate(Double.MAX_VALUE);
+
+        region.setLines("a", "B", "c");
+        assertEquals(List.of("this.terminal.write($0) [\033[<0;1JB\033[<U]"), ui.dumpInvocations());
+        region.setLine(1, "B");
+        assertEquals(List.of(), ui.dumpInvocations());
+    }
+
+    @Test
+    public void testUpdatesAreRateLimited() {
+        LiveRegion region = LiveRegion.create(xterm, "progress", 1);
+        region.setMaxUpdateRate(1e-3);
+        region.setLine(0, "1%");
+        ui.dumpInvocations();
+
+        // the next update is delayed by the rate limit
+        region.setLine(0, "2%");
+        region.setLine(0, "3%");
+        assertEquals(List.of(), ui.dumpInvocations());
+
+        // pending updates are sent when the region is removed
+        region.remove();
+        assertEquals(List.of("this.terminal.write($0) [\033[<0;0J3%\033[<U\033[<0Q]"),
+                ui.dumpInvocations());
+        assertTrue(region.isRemoved());
+        assertEquals("3%", model.getLine(0));
+    }
+
+    @Test
+    public void testRegionFollowsScrolling() {
+        LiveRegion region = LiveRegion.create(xterm, "status", 1);
+        region.setMaxUpdateRate(Double.MAX_VALUE);
+        xterm.write("1\n2\n3");
+        region.setLine(0, "\033[1mok");
+        ui.dumpInvocations();
+        assertEquals("ok\n1\n2\n3\n", model.getScreenText());
+        assertEquals(CellStyle.DEFAULT, model.getStyle(2, 3));
+
+        // the rows of a region are clipped at the right margin
+        region.setLine(0, "0123456789012345678901234");
+        ui.dumpInvocations();
+        assertEquals("01234567890123456784", model.getLine(0));
+        assertEquals("3", model.getLine(3));
+
+        // the region is in the scrollback, so it cannot be updated
+        xterm.write("\n4\n5");
+        region.setLine(0, "gone");
+        ui.dumpInvocations();
+        assertEquals("01234567890123456784", model.getLine(0));
+        assertEquals(1, model.getScrollbackLength());
+        assertEquals("5", model.getCurrentLine());
+    }
+
+    @Test
+    public void testNames() {
+        LiveRegion region = LiveRegion.create(xterm, "a", 1);
+        assertEquals(region, LiveRegion.find(xterm, "a").orElseThrow());
+        assertFalse(LiveRegion.find(xterm, "b").isPresent());
+        try {
+            LiveRegion.create(xterm, "a", 1);
+            throw new AssertionError();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        region.remove();
+        assertTrue(LiveRegion.getNames(xterm).isEmpty());
+    }
+
+    @Test
+    public void testRegionsAreRemovedOnDetach() {
+        LiveRegion region = LiveRegion.create(xterm, "a", 1);
+        ui.remove(xterm);
+        assertTrue(region.isRemoved());
+        assertFalse(LiveRegion.find(xterm, "a").isPresent());
+    }
+
+}
@@ -0,0 +1,113 @@
+/*-
+ * #%L
+ * XTerm Console Addon
+ * %%
+ * Copyright (C) 2020 - 2026 Flowing Code
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.flowingcode.vaadin.addons.xterm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.flowingcode.vaadin.addons.xterm.OutputGovernor.Policy;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.junit.Test;
+
+public class OutputGovernorTest extends AbstractTerminalTest {
+
+    private static String lines(int from, int to) {
+        return IntStream.range(from, to).mapToObj(i -> i + "\r\n").collect(Collectors.joining());
+    }
+
+    @Test
+    public void testDropWritesMarker() {
+        OutputGovernor governor = new OutputGovernor(0, 3, Policy.DROP);
+        xterm.setOutputGovernor(governor);
+        xterm.write(lines(0, 10));
+        assertEquals(List.of("this.terminal.write($0) [" + lines(0, 3) + "]"), ui.dumpInvocations());
+        assertEquals(7, governor.getSuppressedLineCount());
+        assertEquals(1, governor.getThrottleCount());
+        assertEquals("[7 lines suppressed]\r\n", governor.summarize());
+    }
+
+    @Test
+    public void testSample() {
+        OutputGovernor governor = new OutputGovernor(0, 1, Policy.SAMPLE);
+        governor.setSampleRate(4);
+        assertEquals(lines(0, 1) + "[3 lines suppressed]\r\n4\r\n" + "[3 lines suppressed]\r\n8\r\n",
+                governor.filter(lines(0, 10)));
+        assertEquals(7, governor.getSuppressedLineCount());
+    }
+
+    @Test
+    public void testHeadTail() {
+        OutputGovernor governor = new OutputGovernor(0, 2, Policy.HEAD_TAIL);
+        governor.setTailSize(2);
+        assertEquals(lines(0, 2), governor.filter(lines(0, 10)));
+        assertEquals("[6 lines suppressed]\r\n" + lines(8, 10), governor.summarize());
+        assertEquals(8, governor.getSuppressedLineCount());
+        assertEquals(lines(8, 10).length() + lines(2, 8).length(), governor.getSuppressedCharCount());
+    }
+
+    @Test
+    public void testLongTailLinesAreTerminated() {
+        OutputGovernor governor = new OutputGovernor(0, 1, Policy.HEAD_TAIL);
+        governor.setTailSize(2);
+        String line = "x".repeat(2000);
+        assertEquals("a\r\n", governor.filter("a\r\n" + line + "\r\n" + "b\r\n"));
+        assertEquals(line.substring(0, 1024) + "\r\nb\r\n", governor.summarize());
+    }
+
+    @Test
+    public void testIncompleteLineIsSuppressedAsAWhole() {
+        OutputGovernor governor = new OutputGovernor(0, 1, Policy.DROP);
+        assertEquals("a\r\n", governor.filter("a\r\nb"));
+        assertEquals("", governor.filter("c"));
+        assertEquals("", governor.summarize());
+        assertEquals("", governor.filter("d\r\n"));
+        assertEquals("[1 line suppressed]\r\n", governor.summarize());
+    }
+
+    @Test
+    public void testBinaryKeepsSplitCharacters() {
+        xterm.setOutputGovernor(new OutputGovernor(0, 0, Policy.DROP));
+        byte[] data = "á\r\n".getBytes(StandardCharsets.UTF_8);
+        xterm.write(data, 0, 1);
+        xterm.write(data, 1, data.length - 1);
+        String base64 = Base64.getEncoder().encodeToString(data);
+        assertEquals(List.of("this.writeBase64($0) [" + base64 + "]"), ui.dumpInvocations());
+    }
+
+    @Test
+    public void testBlockParksProducer() throws Exception {
+        OutputGovernor governor = new OutputGovernor(0, 20, Policy.BLOCK);
+        long start = System.nanoTime();
+        // the first write overdraws the bucket, and the second one waits for it to refill
+        governor.acquire(22, 22);
+        governor.acquire(1, 1);
+        long elapsed = System.nanoTime() - start;
+        assertTrue(elapsed >= 50_000_000L);
+        assertTrue(governor.getBlockedTime().toMillis() >= 50);
+        // the blocked time is measured, not estimated
+        assertTrue(governor.getBlockedTime().toNanos() <= elapsed);
+        assertEquals(1, governor.getThrottleCount());
+    }
+
+}
@@ -0,0 +1,164 @@
+/*-
+ * #%L
+ * XTerm Console Addon
+ * %%
+ * Copyright (C) 2020 - 2026 Flowing Code
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.flowingcode.vaadin.addons.xterm;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.junit.Test;
+
+public class OutputLaneTest extends AbstractTerminalTest {
+
+    private static final String BULK_WRITE = "this.terminal.write($0,()=>this.acknowledgeWrite($1))";
+
+    private static final Pattern ACK = Pattern.compile(".*, (\\d+)\\]$", Pattern.DOTALL);
+
+    private static final int CLIENT_RATE = 2000;
+
+    private static final int ROUND_TRIP = 5;
+
+    private static final int KEYSTROKE_INTERVAL = 50;
+
+    private static String repeat(char c, int n) {
+        return String.valueOf(c).repeat(n);
+    }
+
+    @Test
+    public void testInteractiveOutputOvertakesQueuedBulkOutput() {
+        xterm.setBulkOutputWindow(2 * BulkOutputQueue.CHUNK_SIZE);
+        xterm.writeBulk(repeat('a', 3 * BulkOutputQueue.CHUNK_SIZE));
+        xterm.write("$ ");
+
+        String chunk = repeat('a', BulkOutputQueue.CHUNK_SIZE);
+        int size = BulkOutputQueue.CHUNK_SIZE;
+        assertEquals(List.of(
+                "this.terminal.write($0) [$ ]",
+                BULK_WRITE + " [" + chunk + ", " + size + "]",
+                BULK_WRITE + " [" + chunk + ", " + size + "]"), ui.dumpInvocations());
+
+        xterm.write("x");
+        assertEquals(List.of("this.terminal.write($0) [x]"), ui.dumpInvocations());
+
+        xterm.acknowledgeBulkOutput(size);
+        assertEquals(List.of(BULK_WRITE + " [" + chunk + ", " + size + "]"), ui.dumpInvocations());
+        assertEquals(2 * size, xterm.getPendingOutputBytes());
+    }
+
+    @Test
+    public void testQueuedBulkOutputIsDiscardedOnDetach() {
+        xterm.setBulkOutputWindow(BulkOutputQueue.CHUNK_SIZE);
+        xterm.writeBulk(repeat('a', 3 * BulkOutputQueue.CHUNK_SIZE));
+        ui.dumpInvocations();
+        assertEquals(2 * BulkOutputQueue.CHUNK_SIZE, xterm.getQueuedBulkOutput());
+
+        ui.remove(xterm);
+        assertEquals(0, xterm.getQueuedBulkOutput());
+        assertEquals(0, xterm.getPendingOutputBytes());
+
+        ui.add(xterm);
+        ui.initialize(xterm);
+        ui.dumpInvocations();
+        xterm.write("$ ");
+        assertEquals(List.of("this.terminal.write($0) [$ ]"), ui.dumpInvocations());
+    }
+
+    /**
+     * Measures the keystroke-to-echo latency while bulk output is streaming, with a simulated client
+     * that parses {@value #CLIENT_RATE} bytes per millisecond and acknowledges bulk output one round
+     * trip later. A producer writes as fast as the flow control allows, and a keystroke is echoed
+     * every {@value #KEYSTROKE_INTERVAL} milliseconds.
+     */
+    @Test
+    public void benchmarkEchoLatencyUnderLoad() {
+        int unbounded = simulateEchoLatency(Integer.MAX_VALUE);
+        int bounded = simulateEchoLatency(64 * 1024);
+
+        // interactive output waits for at most one window of bulk output, plus one chunk
+        int bound = (64 * 1024 + BulkOutputQueue.CHUNK_SIZE) / CLIENT_RATE + 2 * ROUND_TRIP;
+        assertThat(bounded, lessThan(bound));
+        assertThat(bounded, lessThan(unbounded));
+    }
+
+    private int simulateEchoLatency(int window) {
+        setup();
+        xterm.setBulkOutputWindow(window);
+        xterm.setOutputHighWaterMark(1024 * 1024);
+        String bulk = repeat('a', 8 * 1024);
+
+        // payloads in flight to the client: {arrival time, size, ack, keystroke time}
+        Deque<int[]> network = new ArrayDeque<>();
+        Deque<int[]> client = new ArrayDeque<>();
+        Deque<int[]> acks = new ArrayDeque<>();
+        List<Integer> latencies = new ArrayList<>();
+
+        for (int now = 0; now < 10_000; now++) {
+            while (!acks.isEmpty() && acks.peek()[0] <= now) {
+                xterm.acknowledgeBulkOutput(acks.poll()[1]);
+            }
+            while (xterm.getPendingOutputBytes() < xterm.getOutputHighWaterMark()) {
+                xterm.writeBulk(bulk);
+            }
+            if (now % KEYSTROKE_INTERVAL == 0) {
+                xterm.write("x");
+            }
+
+            for (String invocation : ui.dumpInvocations()) {
+                Matcher matcher = ACK.matcher(invocation);
+                if (matcher.matches()) {
+                    int ack = Integer.parseInt(matcher.group(1));
+                    network.add(new int[] {now + ROUND_TRIP / 2, ack, ack, -1});
+                } else {
+                    network.add(new int[] {now + ROUND_TRIP / 2, 1, 0, now});
+                }
+            }
+            while (!network.isEmpty() && network.peek()[0] <= now) {
+                client.add(network.poll());
+            }
+
+            // the client parses its write queue in order
+            for (int budget = CLIENT_RATE; budget > 0 && !client.isEmpty();) {
+                int[] payload = client.peek();
+                int n = Math.min(budget, payload[1]);
+                payload[1] -= n;
+                budget -= n;
+                if (payload[1] == 0) {
+                    client.poll();
+                    if (payload[2] > 0) {
+                        acks.add(new int[] {now + ROUND_TRIP / 2, payload[2]});
+                    } else {
+                        latencies.add(now - payload[3]);
+                    }
+                }
+            }
+        }
+
+        Collections.sort(latencies);
+        return latencies.get(latencies.size() * 99 / 100);
+    }
+
+}
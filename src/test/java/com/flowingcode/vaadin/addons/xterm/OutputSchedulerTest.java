@@ -0,0 +1,87 @@
+/*-
+ * #%L
+ * XTerm Console Addon
+ * %%
+ * Copyright (C) 2020 - 2026 Flowing Code
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.flowingcode.vaadin.addons.xterm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.List;
+import java.util.stream.Collectors;
+import org.junit.Before;
+import org.junit.Test;
+
+public class OutputSchedulerTest {
+
+    private static final int CHUNK = BulkOutputQueue.CHUNK_SIZE;
+
+    private TestUI ui;
+    private XTerm noisy;
+    private XTerm quiet;
+    private OutputScheduler scheduler;
+
+    @Before
+    public void setup() {
+        ui = new TestUI();
+        noisy = new XTerm();
+        quiet = new XTerm();
+        ui.add(noisy, quiet);
+        ui.initialize(noisy);
+        ui.initialize(quiet);
+        ui.dumpInvocations();
+        scheduler = OutputScheduler.get(ui);
+    }
+
+    /** Returns the acknowledgement of each bulk write sent to the client. */
+    private List<String> dumpBulkWrites() {
+        return ui.dumpInvocations().stream()
+                .map(invocation -> invocation.replaceAll("(?s).*, (\\d+)\\]$", "$1"))
+                .collect(Collectors.toList());
+    }
+
+    @Test
+    public void testTerminalsAreRegistered() {
+        assertSame(scheduler, OutputScheduler.get(ui));
+        assertEquals(List.of(noisy, quiet), scheduler.getTerminals());
+        ui.remove(quiet);
+        assertEquals(List.of(noisy), scheduler.getTerminals());
+    }
+
+    @Test
+    public void testBudgetIsSharedFairly() {
+        scheduler.setFlushBudget(3 * CHUNK);
+        noisy.setBulkOutputWindow(10 * CHUNK);
+        noisy.writeBulk("a".repeat(8 * CHUNK));
+        quiet.writeBulk("b".repeat(CHUNK));
+        quiet.writeBulk("c".repeat(CHUNK / 2));
+
+        // noisy gets one chunk, then quiet gets one chunk, then noisy again
+        String chunk = String.valueOf(CHUNK);
+        assertEquals(List.of(chunk, chunk, chunk), dumpBulkWrites());
+        assertEquals(6 * CHUNK, noisy.getQueuedBulkOutput());
+        assertEquals(CHUNK / 2, quiet.getQueuedBulkOutput());
+        assertEquals(6 * CHUNK + CHUNK / 2, scheduler.getQueuedOutput());
+
+        // the next flush starts with the quiet terminal
+        quiet.acknowledgeBulkOutput(CHUNK);
+        assertEquals(List.of(String.valueOf(CHUNK / 2), chunk, chunk), dumpBulkWrites());
+        assertEquals(0, quiet.getQueuedBulkOutput());
+    }
+
+}
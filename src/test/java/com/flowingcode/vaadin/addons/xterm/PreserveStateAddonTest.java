@@ -21,6 +21,7 @@ package com.flowingcode.vaadin.addons.xterm;
 
 import com.vaadin.flow.component.Component;
 import com.vaadin.flow.component.ComponentUtil;
+import java.util.List;
 import org.junit.Test;
 
 import static org.junit.Assert.assertEquals;
@@ -76,4 +77,33 @@ public class PreserveStateAddonTest {
         addon.reset();
         assertEquals("", addon.getScrollbackBuffer());
     }
+
+    @Test
+    public void stateIsRestoredAsSingleInvocationOnReattach() {
+        TestUI ui = new TestUI();
+        XTerm xterm = new XTerm();
+        final PreserveStateAddon addon = new PreserveStateAddon(xterm);
+        ui.add(xterm);
+        ui.initialize(xterm);
+        addon.setCursorBlink(true);
+        addon.setBellStyle(ITerminalOptions.BellStyle.SOUND);
+        addon.setFontSize(12);
+        addon.writeln("foo");
+        ui.dumpInvocations();
+
+        ui.remove(xterm);
+        ui.add(xterm);
+        ui.initialize(xterm);
+        List<String> invocations = ui.dumpInvocations();
+        assertEquals(List.of("(()=>{this.terminal.write($0)\n})();"
+                + "(()=>{this.bellStyle=$1\n})();"
+                + "(()=>{this.terminal.options=$2\n})();"
+                + "(()=>{this.terminal.write($3)\n})();"
+                + "(()=>{this.writePrompt()\n})();"
+                + "(()=>{this.terminal.write($4)\n})(); "
+                + "[\033[?2026h, sound, {\"cursorBlink\":true,\"fontSize\":12}, foo\n, \033[?2026l]"),
+                invocations);
+        // the options are restored with a single assignment
+        assertEquals(1, invocations.get(0).split("this\\.terminal\\.options=", -1).length - 1);
+    }
 }
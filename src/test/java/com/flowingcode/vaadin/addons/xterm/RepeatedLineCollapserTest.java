@@ -0,0 +1,115 @@
+/*-
+ * #%L
+ * XTerm Console Addon
+ * %%
+ * Copyright (C) 2020 - 2026 Flowing Code
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.flowingcode.vaadin.addons.xterm;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+
+public class RepeatedLineCollapserTest extends AbstractTerminalTest {
+
+    @Override
+    @Before
+    public void setup() {
+        super.setup();
+        xterm.setRepeatedLineCollapsingEnabled(true);
+    }
+
+    @Test
+    public void testRepeatedLinesAreCollapsedInPlace() {
+        xterm.writeln("foo");
+        xterm.writeln("foo");
+        xterm.writeln("foo");
+        assertEquals(List.of("this.terminal.write($0) [foo\r\n[last line repeated 2 times]\r\n]"),
+                ui.dumpInvocations());
+
+        xterm.writeln("foo");
+        xterm.writeln("bar");
+        assertEquals(
+                List.of("this.terminal.write($0) [\033[F\033[2K[last line repeated 3 times]\r\nbar\r\n]"),
+                ui.dumpInvocations());
+        assertEquals(3, xterm.getCollapsedLineCount());
+    }
+
+    @Test
+    public void testPartialLineIsReleasedAtTheEndOfTheRequest() {
+        xterm.writeln("foo");
+        xterm.write("fo");
+        assertEquals(List.of("this.terminal.write($0) [foo\r\nfo]"), ui.dumpInvocations());
+        xterm.writeln("o");
+        assertEquals(List.of("this.terminal.write($0) [o\r\n]"), ui.dumpInvocations());
+    }
+
+    @Test
+    public void testSplitLineIsCollapsed() {
+        xterm.writeln("foo");
+        xterm.write("fo");
+        xterm.writeln("o");
+        xterm.write("fox");
+        assertEquals(
+                List.of("this.terminal.write($0) [foo\r\n[last line repeated 1 time]\r\nfox]"),
+                ui.dumpInvocations());
+    }
+
+    @Test
+    public void testCounterIsRewrittenInPlace() {
+        xterm.writeln("foo");
+        xterm.writeln("foo");
+        ui.dumpInvocations();
+        xterm.writeln("foo");
+        assertEquals(
+                List.of("this.terminal.write($0) [\033[F\033[2K[last line repeated 2 times]\r\n]"),
+                ui.dumpInvocations());
+
+        // the run ends without rewriting the counter
+        xterm.writeln("bar");
+        assertEquals(List.of("this.terminal.write($0) [bar\r\n]"), ui.dumpInvocations());
+    }
+
+    @Test
+    public void testWithheldOutputIsReleasedInItsLane() {
+        xterm.writeln("foo");
+        xterm.writeBulk("foo\r\n");
+        assertEquals(List.of("this.terminal.write($0) [foo\r\n]",
+                "this.terminal.write($0,()=>this.acknowledgeWrite($1)) "
+                        + "[[last line repeated 1 time]\r\n, 29]"),
+                ui.dumpInvocations());
+    }
+
+    @Test
+    public void testEmptyLinesAreNotCollapsed() {
+        RepeatedLineCollapser collapser = new RepeatedLineCollapser(true);
+        assertEquals("\r\n\r\n\r\n", collapser.filter("\r\n\r\n\r\n"));
+    }
+
+    @Test
+    public void testScrollbackBuffer() {
+        PreserveStateAddon addon = new PreserveStateAddon(xterm);
+        addon.writeln("foo");
+        addon.writeln("foo");
+        addon.writeln("foo");
+        assertEquals("foo\n[last line repeated 2 times]\r\n", addon.getScrollbackBuffer());
+        addon.writeln("bar");
+        assertEquals("foo\n[last line repeated 2 times]\r\nbar\n", addon.getScrollbackBuffer());
+    }
+
+}
@@ -0,0 +1,70 @@
+/*-
+ * #%L
+ * XTerm Console Addon
+ * %%
+ * Copyright (C) 2020 - 2026 Flowing Code
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.flowingcode.vaadin.addons.xterm;
+
+import static org.junit.Assert.assertEquals;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+import org.junit.Test;
+
+public class SynchronizedUpdateTest extends AbstractTerminalTest {
+
+    @Test
+    public void testBatchIsSentAsSinglePayload() {
+        xterm.setWriteCoalescingEnabled(false);
+        xterm.batch(() -> {
+            xterm.write("foo");
+            xterm.writeln("bar");
+        });
+        assertEquals(List.of("this.terminal.write($0) [\033[?2026hfoobar\r\n\033[?2026l]"),
+                ui.dumpInvocations());
+    }
+
+    @Test
+    public void testNestedUpdates() {
+        xterm.beginUpdate();
+        xterm.write("foo");
+        xterm.batch(() -> xterm.write("bar"));
+        xterm.write("baz");
+        xterm.endUpdate();
+        assertEquals(List.of("this.terminal.write($0) [\033[?2026hfoobarbaz\033[?2026l]"),
+                ui.dumpInvocations());
+    }
+
+    @Test
+    public void testTextAndBinaryWritesAreMerged() {
+        xterm.batch(() -> {
+            xterm.write("foo");
+            xterm.write("bar".getBytes(StandardCharsets.UTF_8));
+            xterm.write("baz");
+        });
+        String expected = Base64.getEncoder()
+                .encodeToString("\033[?2026hfoobarbaz\033[?2026l".getBytes(StandardCharsets.UTF_8));
+        assertEquals(List.of("this.writeBase64($0) [" + expected + "]"), ui.dumpInvocations());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testUnbalancedEndUpdate() {
+        xterm.endUpdate();
+    }
+
+}
@@ -0,0 +1,158 @@
+/*-
+ * #%L
+ * XTerm Console Addon
+ * %%
+ * Copyright (C) 2020 - 2026 Flowing Code
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.flowingcode.vaadin.addons.xterm;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class TerminalCanvasTest {
+
+    private final StringBuilder written = new StringBuilder();
+
+    private XTerm xterm;
+
+    private TerminalModel model;
+
+    @Before
+    public void setup() {
+        xterm = new XTerm() {
+            @Override
+            public void write(String data) {
+                written.append(data);
+                super.write(data);
+            }
+        };
+        xterm.setTerminalModelEnabled(true);
+        model = xterm.getTerminalModel();
+    }
+
+    private String flush(TerminalCanvas canvas) {
+        written.setLength(0);
+        assertEquals(canvas.flush(), written.length());
+        return written.toString();
+    }
+
+    @Test
+    public void testFirstFlushDrawsCanvas() {
+        TerminalCanvas canvas = new TerminalCanvas(xterm, 10, 3);
+        canvas.print(0, 0, "foo", CellStyle.DEFAULT);
+        canvas.print(2, 2, "bar  baz qux", CellStyle.DEFAULT);
+        assertEquals("\033[m\033[H\033[2Jfoo\033[3;3Hbar  baz", flush(canvas));
+        assertEquals("foo", model.getLine(0));
+        assertEquals("  bar  baz", model.getLine(2));
+    }
+
+    @Test
+    public void testFlushWithoutChanges() {
+        TerminalCanvas canvas = new TerminalCanvas(xterm, 10, 3);
+        canvas.print(0, 0, "foo", CellStyle.DEFAULT);
+        flush(canvas);
+        assertEquals("", flush(canvas));
+        canvas.print(0, 0, "foo", CellStyle.DEFAULT);
+        assertEquals("", flush(canvas));
+    }
+
+    @Test
+    public void testCursorMovements() {
+        TerminalCanvas canvas = new TerminalCanvas(xterm, 20, 3);
+        canvas.print(0, 0, "abcdefghijklmnopqrst", CellStyle.DEFAULT);
+        canvas.print(0, 1, "abcdefghijklmnopqrst", CellStyle.DEFAULT);
+        flush(canvas);
+
+        canvas.set(1, 0, 'B', CellStyle.DEFAULT);
+        canvas.set(4, 0, 'E', CellStyle.DEFAULT);
+        canvas.set(15, 0, 'P', CellStyle.DEFAULT);
+        canvas.set(0, 1, 'A', CellStyle.DEFAULT);
+        canvas.set(19, 1, 'T', CellStyle.DEFAULT);
+        // short gaps are rewritten, long gaps are skipped
+        assertEquals("\033[1;2HBcdE\033[10CP\r\nA\033[18CT", flush(canvas));
+        assertEquals("aBcdEfghijklmnoPqrst", model.getLine(0));
+        assertEquals("AbcdefghijklmnopqrsT", model.getLine(1));
+
+        canvas.set(0, 2, 'x', CellStyle.DEFAULT);
+        // the cursor is unknown after writing in the last column
+        assertEquals("\033[3Hx", flush(canvas));
+    }
+
+    @Test
+    public void testMinimalStyleChanges() {
+        TerminalCanvas canvas = new TerminalCanvas(xterm, 10, 1);
+        CellStyle bold = CellStyle.DEFAULT.withBold(true);
+        canvas.print(0, 0, "ab", bold);
+        canvas.print(2, 0, "cd", bold.withForeground(CellStyle.RED));
+        canvas.print(4, 0, "ef", bold.withDim(true).withBold(false));
+        assertEquals("\033[m\033[H\033[2J\033[1mab\033[31mcd\033[0;2mef\033[m", flush(canvas));
+
+        assertEquals(bold, model.getStyle(0, 0));
+        assertEquals(bold.withForeground(CellStyle.RED), model.getStyle(2, 0));
+        assertEquals(CellStyle.DEFAULT.withDim(true), model.getStyle(4, 0));
+        assertEquals(CellStyle.DEFAULT, model.getStyle(6, 0));
+    }
+
+    private static String sgr(CellStyle from, CellStyle to) {
+        return Sgr.toSequence(from.bits(), to.bits());
+    }
+
+    @Test
+    public void testSgrSequences() {
+        CellStyle bold = CellStyle.DEFAULT.withBold(true);
+        assertEquals("", sgr(bold, bold));
+        assertEquals("\033[m", sgr(bold, CellStyle.DEFAULT));
+        assertEquals("\033[0;2m", sgr(bold, CellStyle.DEFAULT.withDim(true)));
+        assertEquals("\033[94;48;5;17m",
+                sgr(CellStyle.DEFAULT, CellStyle.DEFAULT.withForeground(12).withBackground(17)));
+        assertEquals("\033[38;2;1;2;3m",
+                sgr(CellStyle.DEFAULT, CellStyle.DEFAULT.withForeground(CellStyle.rgb(1, 2, 3))));
+        // resetting is shorter than clearing several attributes
+        CellStyle busy = bold.withItalic(true).withUnderline(true).withInverse(true);
+        assertEquals("\033[0;4m", sgr(busy, CellStyle.DEFAULT.withUnderline(true)));
+    }
+
+    @Test
+    public void testInvalidate() {
+        TerminalCanvas canvas = new TerminalCanvas(xterm, 10, 2);
+        canvas.print(0, 1, "foo", CellStyle.DEFAULT);
+        flush(canvas);
+        canvas.invalidate();
+        assertEquals("\033[m\033[H\033[2J\r\nfoo", flush(canvas));
+    }
+
+    @Test
+    public void testSmallChangeOnLargeCanvas() {
+        TerminalCanvas canvas = new TerminalCanvas(xterm, 200, 60);
+        model.resize(200, 60);
+        for (int y = 0; y < 60; y++) {
+            canvas.print(0, y, String.format("%-200s", "row " + y).replace(' ', '.'), CellStyle.DEFAULT);
+        }
+        int full = flush(canvas).length();
+        assertTrue(full >= 200 * 60);
+
+        canvas.print(100, 30, "42", CellStyle.DEFAULT.withForeground(CellStyle.GREEN));
+        String diff = flush(canvas);
+        assertThat(diff.length(), lessThan(full / 100));
+        assertEquals("\033[31;101H\033[32m42\033[m", diff);
+    }
+
+}
@@ -0,0 +1,99 @@
+/*-
+ * #%L
+ * XTerm Console Addon
+ * %%
+ * Copyright (C) 2020 - 2026 Flowing Code
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.flowingcode.vaadin.addons.xterm;
+
+import static org.junit.Assert.assertEquals;
+
+import com.flowingcode.vaadin.addons.xterm.ITerminalOptions.BellStyle;
+import com.flowingcode.vaadin.addons.xterm.ITerminalOptions.CursorStyle;
+import java.util.List;
+import org.junit.Test;
+
+public class TerminalDelegateTest extends AbstractTerminalTest {
+
+    @Test
+    public void testOptions() {
+        xterm.setCursorBlink(true);
+        xterm.setCursorStyle(CursorStyle.UNDERLINE);
+        xterm.setBellStyle(BellStyle.SOUND);
+        xterm.setCursorWidth(2);
+        // element properties do not flush the pending options
+        assertEquals(List.of(
+                "this.bellStyle=$0 [sound]",
+                "this.terminal.options=$0 [{\"cursorBlink\":true,\"cursorStyle\":\"underline\","
+                        + "\"cursorWidth\":2}]"), ui.dumpInvocations());
+    }
+
+    @Test
+    public void testOptionsAreMerged() {
+        xterm.setFontSize(12);
+        xterm.setTheme(null);
+        xterm.setFontSize(14);
+        xterm.setFontFamily(null);
+        assertEquals(List.of(
+                "this.terminal.options=$0 [{\"fontSize\":14,\"theme\":null,\"fontFamily\":null}]"),
+                ui.dumpInvocations());
+        assertEquals(List.of(), ui.dumpInvocations());
+    }
+
+    @Test
+    public void testOptionsAreSentBeforeOtherCommands() {
+        xterm.setCursorBlink(true);
+        xterm.scrollToBottom();
+        xterm.setCursorBlink(false);
+        assertEquals(List.of(
+                "this.terminal.options=$0 [{\"cursorBlink\":true}]",
+                "this.terminal.scrollToBottom() []",
+                "this.terminal.options=$0 [{\"cursorBlink\":false}]"), ui.dumpInvocations());
+    }
+
+    @Test
+    public void testCalls() {
+        xterm.select(1, 2, 3);
+        xterm.scrollToBottom();
+        assertEquals(List.of(
+                "this.terminal.select($0,$1,$2) [1, 2, 3]",
+                "this.terminal.scrollToBottom() []"), ui.dumpInvocations());
+    }
+
+    @Test
+    public void testInvalidArgumentsAreNotSent() {
+        xterm.setTerminalModelEnabled(true);
+        for (Runnable call : List.<Runnable>of(
+                () -> xterm.resize(0, 10), () -> xterm.setTabStopWidth(0))) {
+            try {
+                call.run();
+                throw new AssertionError();
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+        }
+        assertEquals(List.of(), ui.dumpInvocations());
+    }
+
+    @Test
+    public void testQuery() {
+        xterm.getSelection();
+        assertEquals(List.of(
+                "this.setInputGeneration($0) [1]",
+                "return [this.terminal.getSelection()] []"), ui.dumpInvocations());
+    }
+
+}
@@ -0,0 +1,55 @@
+/*-
+ * #%L
+ * XTerm Console Addon
+ * %%
+ * Copyright (C) 2020 - 2026 Flowing Code
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.flowingcode.vaadin.addons.xterm;
+
+import org.junit.Test;
+
+/**
+ * Measures the parse throughput of {@link TerminalModel}. Benchmarks are not part of the unit
+ * tests; run them with {@code mvn test -Pbenchmarks}.
+ */
+public class TerminalModelBenchmark {
+
+    /** Reports the parse throughput for colored output, in MB/s. */
+    @Test
+    public void benchmarkThroughput() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; sb.length() < 1024 * 1024; i++) {
+            sb.append("\033[1;3").append(i % 8).append("m").append(i).append("\033[0m ")
+                    .append("the quick brown fox jumps over the lazy dog ").append(i).append("\r\n");
+        }
+        String data = sb.toString();
+        TerminalModel model = new TerminalModel(120, 40);
+
+        // warm up
+        for (int i = 0; i < 10; i++) {
+            model.write(data);
+        }
+        int iterations = 20;
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            model.write(data);
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        double throughput = iterations * data.length() / seconds / (1024 * 1024);
+        System.out.printf("Terminal model parse throughput: %.1f MB/s%n", throughput);
+    }
+
+}
@@ -0,0 +1,226 @@
+/*-
+ * #%L
+ * XTerm Console Addon
+ * %%
+ * Copyright (C) 2020 - 2026 Flowing Code
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.flowingcode.vaadin.addons.xterm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import org.junit.Test;
+
+public class TerminalModelTest {
+
+    private final TerminalModel model = new TerminalModel(10, 3);
+
+    @Test
+    public void testPrintAndLineFeed() {
+        model.write("foo\nbar");
+        assertEquals("foo\nbar\n", model.getScreenText());
+        assertEquals(3, model.getCursorX());
+        assertEquals(1, model.getCursorY());
+        assertEquals("bar", model.getCurrentLine());
+    }
+
+    @Test
+    public void testWrappedLines() {
+        model.write("0123456789abc");
+        assertEquals("0123456789\nabc\n", model.getScreenText());
+        assertFalse(model.isWrapped(0));
+        assertTrue(model.isWrapped(1));
+        assertEquals("0123456789abc", model.getLogicalLine(0));
+        assertEquals("0123456789abc", model.getCurrentLine());
+    }
+
+    @Test
+    public void testPendingWrap() {
+        model.write("0123456789");
+        assertEquals(10, model.getCursorX());
+        assertEquals(0, model.getCursorY());
+        model.write("\r\n");
+        assertFalse(model.isWrapped(1));
+    }
+
+    @Test
+    public void testScrollback() {
+        model.setScrollback(2);
+        model.write("1\n2\n3\n4\n5\n6");
+        assertEquals(5, model.getBufferLength());
+        assertEquals(2, model.getScrollbackLength());
+        assertEquals("2", model.getLine(0));
+        assertEquals("4\n5\n6", model.getScreenText());
+    }
+
+    @Test
+    public void testCursorMovementAndErase() {
+        model.write("abcdef\033[3D\033[K");
+        assertEquals("abc\n\n", model.getScreenText());
+        model.write("\033[2;5Hx\033[1;1H\033[2J");
+        assertEquals("\n\n", model.getScreenText());
+        assertEquals(0, model.getCursorX());
+    }
+
+    @Test
+    public void testInsertAndDeleteChars() {
+        model.write("abcdef\r\033[2C\033[2@");
+        assertEquals("ab  cdef", model.getLine(0));
+        model.write("\033[3P");
+        assertEquals("abdef", model.getLine(0));
+        model.write("\033[4hXY\033[4l");
+        assertEquals("abXYdef", model.getLine(0));
+    }
+
+    @Test
+    public void testScrollRegion() {
+        model.write("a\nb\nc\033[1;2r\033[2;1H\n");
+        assertEquals("b\n\nc", model.getScreenText());
+        assertEquals(0, model.getScrollbackLength());
+    }
+
+    @Test
+    public void testAlternateBuffer() {
+        model.write("shell\033[?1049h\033[Hfull screen");
+        assertTrue(model.isAlternateBufferActive());
+        assertEquals("full scree\nn\n", model.getScreenText());
+        model.write("\033[?1049l");
+        assertFalse(model.isAlternateBufferActive());
+        assertEquals("shell\n\n", model.getScreenText());
+        assertEquals(5, model.getCursorX());
+    }
+
+    @Test
+    public void testSequencesSplitAcrossWrites() {
+        model.write("abc\033[");
+        model.write("2");
+        model.write("D\033]0;title");
+        model.write("\007x");
+        assertEquals("axc", model.getLine(0));
+    }
+
+    @Test
+    public void testUtf8SplitAcrossWrites() {
+        byte[] data = "añ世".getBytes(StandardCharsets.UTF_8);
+        model.write(data, 0, 2);
+        model.write(data, 2, data.length - 2);
+        assertEquals("añ世", model.getLine(0));
+        assertEquals(4, model.getCursorX());
+    }
+
+    @Test
+    public void testSgrIsNotPrinted() {
+        model.write("\033[1;38;2;10;20;30mbold\033[0m \033[38;5;196mred\033[m");
+        assertEquals("bold red", model.getLine(0));
+    }
+
+    @Test
+    public void testClear() {
+        model.write("1\n2\n3\n4\nprompt");
+        model.clear();
+        assertEquals(0, model.getScrollbackLength());
+        assertEquals("prompt\n\n", model.getScreenText());
+        assertEquals(0, model.getCursorY());
+    }
+
+    @Test
+    public void testResize() {
+        model.write("1\n2\n3\n4");
+        model.resize(5, 2);
+        assertEquals("3\n4", model.getScreenText());
+        model.resize(5, 4);
+        assertEquals("1\n2\n3\n4", model.getScreenText());
+        assertEquals(3, model.getCursorY());
+    }
+
+    @Test
+    public void testRegionStateIsClampedOnResize() {
+        TerminalModel model = new TerminalModel(8, 3);
+        model.setScrollback(1);
+        model.write("DG8P38;5;\033[<J");
+        model.resize(1, 1);
+        model.write("\033[<U");
+        assertEquals(0, model.getCursorY());
+        assertEquals("D;", model.getCurrentLine());
+
+        model = new TerminalModel(10, 1);
+        model.write("0123456789\033[<J");
+        model.resize(2, 7);
+        model.write("\033[<U");
+        assertEquals(1, model.getCursorX());
+    }
+
+    @Test
+    public void testCombiningMarks() {
+        model.write("abc\u0301 e\u0301\u0302\u4e16\u0301");
+        assertEquals("abc\u0301 e\u0301\u0302\u4e16\u0301", model.getLine(0));
+        assertEquals(7, model.getCursorX());
+
+        // a mark at the end of a filled line combines with its last character
+        model.write("\r\n0123456789\u0301");
+        assertEquals("0123456789\u0301", model.getLine(1));
+
+        // a mark that does not follow a character is discarded
+        model.write("\r\n\u0301x\033[2D\033[P");
+        assertEquals("", model.getLine(2));
+    }
+
+    @Test
+    public void testConsoleEraseLogicalLine() {
+        model.write("0123456789abc\033[<2K\033[<Hxyz");
+        assertEquals("xyz", model.getCurrentLine());
+    }
+
+    @Test
+    public void testModelIsFedByTerminal() {
+        TestUI ui = new TestUI();
+        XTerm xterm = new XTerm();
+        ui.add(xterm);
+        ui.initialize(xterm);
+        xterm.setTerminalModelEnabled(true);
+        xterm.writeln("foo");
+        xterm.write("bar".getBytes(StandardCharsets.UTF_8));
+        xterm.writeBulk("baz");
+        assertEquals("foo", xterm.getTerminalModel().getLine(0));
+        assertEquals("barbaz", xterm.getTerminalModel().getCurrentLine());
+        xterm.clear();
+        assertEquals(0, xterm.getTerminalModel().getScrollbackLength());
+
+        ui.remove(xterm);
+        assertEquals("", xterm.getTerminalModel().getCurrentLine());
+    }
+
+    @Test
+    public void testLargeColoredOutput() {
+        StringBuilder sb = new StringBuilder();
+        int i = 0;
+        for (; sb.length() < 1024 * 1024; i++) {
+            sb.append("\033[1;3").append(i % 8).append("m").append(i).append("\033[0m ")
+                    .append("the quick brown fox jumps over the lazy dog ").append(i).append("\r\n");
+        }
+        TerminalModel model = new TerminalModel(120, 40);
+        model.write(sb.toString());
+
+        int last = i - 1;
+        assertEquals(last + " the quick brown fox jumps over the lazy dog " + last, model.getLine(1038));
+        assertTrue(model.getStyle(0, 1038).isBold());
+        assertEquals(CellStyle.DEFAULT, model.getStyle(String.valueOf(last).length(), 1038));
+        assertEquals(1000, model.getScrollbackLength());
+    }
+
+}
@@ -0,0 +1,97 @@
+/*-
+ * #%L
+ * XTerm Console Addon
+ * %%
+ * Copyright (C) 2020 - 2026 Flowing Code
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.flowingcode.vaadin.addons.xterm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.vaadin.flow.component.UI;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TerminalOutputStreamTest extends AbstractTerminalTest {
+
+    @Override
+    @Before
+    public void setup() {
+        super.setup();
+        UI.setCurrent(ui);
+    }
+
+    @After
+    public void teardown() {
+        UI.setCurrent(null);
+    }
+
+    @Test
+    public void testWriterOutputIsAcknowledged() throws IOException {
+        try (Writer writer = xterm.openWriter()) {
+            writer.write("foo");
+            writer.flush();
+            writer.write("bar");
+        }
+        String data = Base64.getEncoder().encodeToString("foobar".getBytes(StandardCharsets.UTF_8));
+        assertEquals(List.of("this.writeBase64($0,$1) [" + data + ", 6]"), ui.dumpInvocations());
+        assertEquals(6, xterm.getPendingOutputBytes());
+    }
+
+    @Test
+    public void testProducerIsParkedAboveHighWaterMark() throws Exception {
+        OutputFlowControl flowControl = new OutputFlowControl(10);
+        flowControl.acquire(8, true);
+
+        CountDownLatch acquired = new CountDownLatch(1);
+        Thread producer = new Thread(() -> {
+            try {
+                flowControl.acquire(8, true);
+                acquired.countDown();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        producer.start();
+
+        assertFalse(acquired.await(100, TimeUnit.MILLISECONDS));
+        flowControl.release(8);
+        assertTrue(acquired.await(5, TimeUnit.SECONDS));
+        assertEquals(8, flowControl.getInFlight());
+    }
+
+    @Test
+    public void testDetachReleasesPendingOutput() throws IOException {
+        try (OutputStream out = xterm.openOutputStream()) {
+            out.write(new byte[100]);
+        }
+        assertEquals(100, xterm.getPendingOutputBytes());
+        ui.remove(xterm);
+        assertEquals(0, xterm.getPendingOutputBytes());
+    }
+
+}
@@ -0,0 +1,104 @@
+/*-
+ * #%L
+ * XTerm Console Addon
+ * %%
+ * Copyright (C) 2020 - 2026 Flowing Code
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.flowingcode.vaadin.addons.xterm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import com.flowingcode.vaadin.addons.xterm.ITerminalOptions.CursorStyle;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+
+public class TerminalProfileTest {
+
+    private static final TerminalProfile DARK = TerminalProfile.of("dark")
+            .withTheme(new TerminalTheme().withBackground("#000").withForeground("#ddd"))
+            .withFontSize(14)
+            .withCursorStyle(CursorStyle.BAR);
+
+    private static XTerm createTerminal(TestUI ui) {
+        XTerm xterm = new XTerm();
+        ui.add(xterm);
+        ui.initialize(xterm);
+        ui.dumpInvocations();
+        return xterm;
+    }
+
+    @Test
+    public void testOptions() {
+        assertEquals("{\"theme\":" + DARK.getTheme().asJsonObject().toJson()
+                + ",\"fontSize\":14,\"cursorStyle\":\"bar\"}", DARK.asJsonObject().toJson());
+        assertSame(DARK.asJsonObject(), DARK.asJsonObject());
+        assertSame(DARK.getTheme().asJsonObject(), DARK.getTheme().asJsonObject());
+    }
+
+    @Test
+    public void testProfileIsSentOncePerUI() {
+        TestUI ui = new TestUI();
+        XTerm first = createTerminal(ui);
+        XTerm second = createTerminal(ui);
+
+        first.setProfile(DARK);
+        second.setProfile(DARK);
+        assertEquals(List.of(
+                "this.applyProfile($0,$1) [dark, " + DARK.asJsonObject().toJson() + "]",
+                "this.applyProfile($0,$1) [dark, null]"), ui.dumpInvocations());
+
+        // another UI does not know about the profile yet
+        TestUI other = new TestUI();
+        createTerminal(other).setProfile(DARK);
+        assertEquals(List.of("this.applyProfile($0,$1) [dark, " + DARK.asJsonObject().toJson() + "]"),
+                other.dumpInvocations());
+    }
+
+    @Test
+    public void testChangedProfileIsSentAgain() {
+        TestUI ui = new TestUI();
+        XTerm xterm = createTerminal(ui);
+        xterm.setProfile(DARK);
+        ui.dumpInvocations();
+
+        TerminalProfile larger = DARK.withFontSize(16);
+        xterm.setProfile(larger);
+        assertEquals(List.of("this.applyProfile($0,$1) [dark, " + larger.asJsonObject().toJson() + "]"),
+                ui.dumpInvocations());
+    }
+
+    @Test
+    public void testDefaultImplementationUsesSetters() {
+        List<String> calls = new ArrayList<>();
+        InvocationHandler handler = (proxy, method, args) -> {
+            if (method.isDefault()) {
+                return InvocationHandler.invokeDefault(proxy, method, args);
+            }
+            calls.add(method.getName() + " " + args[0]);
+            return null;
+        };
+        ITerminalOptions options = (ITerminalOptions) Proxy.newProxyInstance(
+                ITerminalOptions.class.getClassLoader(), new Class<?>[] {ITerminalOptions.class}, handler);
+
+        options.setProfile(DARK);
+        assertEquals(List.of("setTheme " + DARK.getTheme(), "setFontSize 14", "setCursorStyle BAR"), calls);
+    }
+
+}
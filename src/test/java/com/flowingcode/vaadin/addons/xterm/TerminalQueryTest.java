@@ -0,0 +1,163 @@
+/*-
+ * #%L
+ * XTerm Console Addon
+ * %%
+ * Copyright (C) 2020 - 2026 Flowing Code
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.flowingcode.vaadin.addons.xterm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.vaadin.flow.component.internal.PendingJavaScriptInvocation;
+import elemental.json.Json;
+import elemental.json.JsonArray;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import org.junit.Test;
+
+public class TerminalQueryTest extends AbstractTerminalTest {
+
+    @Test
+    public void testSeveralValuesInOneInvocation() {
+        CompletableFuture<TerminalQuery.Result> future = xterm.query()
+                .with(TerminalValue.HAS_SELECTION)
+                .with(TerminalValue.SELECTION)
+                .with(TerminalValue.CURSOR_Y)
+                .fetch();
+
+        List<PendingJavaScriptInvocation> invocations = ui.dumpPendingInvocations();
+        assertEquals(1, invocations.size());
+        assertEquals("return [this.terminal.hasSelection(),this.terminal.getSelection(),"
+                + "this.terminal.buffer.active.cursorY] []", TestUI.format(invocations.get(0)));
+
+        JsonArray json = Json.createArray();
+        json.set(0, true);
+        json.set(1, "foo");
+        json.set(2, Json.createNull());
+        invocations.get(0).complete(json);
+
+        TerminalQuery.Result result = future.join();
+        assertEquals(true, result.get(TerminalValue.HAS_SELECTION));
+        assertEquals("foo", result.get(TerminalValue.SELECTION));
+        assertNull(result.get(TerminalValue.CURSOR_Y));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testValueNotQueried() {
+        CompletableFuture<TerminalQuery.Result> future =
+                xterm.query().with(TerminalValue.ROWS).fetch();
+        JsonArray json = Json.createArray();
+        json.set(0, 24);
+        ui.dumpPendingInvocations().get(0).complete(json);
+        future.join().get(TerminalValue.COLUMNS);
+    }
+
+    @Test
+    public void testIdenticalQueriesAreShared() {
+        CompletableFuture<Boolean> first = xterm.hasSelection();
+        CompletableFuture<Boolean> second = xterm.hasSelection();
+        List<PendingJavaScriptInvocation> invocations = ui.dumpPendingInvocations();
+        // the first selection query also starts tracking the input model
+        assertEquals(2, invocations.size());
+
+        JsonArray json = Json.createArray();
+        json.set(0, true);
+        invocations.get(1).complete(json);
+        assertSame(first.join(), second.join());
+
+        // the first query is no longer in flight
+        xterm.hasSelection();
+        assertEquals(1, ui.dumpInvocations().size());
+    }
+
+    @Test
+    public void testQueriesAreNotSharedAcrossCommands() {
+        xterm.getSelection();
+        xterm.selectAll();
+        xterm.getSelection();
+        assertEquals(List.of(
+                "this.setInputGeneration($0) [1]",
+                "return [this.terminal.getSelection()] []",
+                "this.terminal.selectAll() []",
+                "return [this.terminal.getSelection()] []"), ui.dumpInvocations());
+    }
+
+    @Test
+    public void testQueryBeforeInitialization() {
+        TestUI ui = new TestUI();
+        XTerm xterm = new XTerm();
+        ui.add(xterm);
+        xterm.scrollToBottom();
+        CompletableFuture<String> future = xterm.getCurrentLine();
+        assertFalse(future.isDone());
+        assertEquals(List.of(
+                "this.whenInitialized(()=>{(()=>{this.insertMode=$0\n})();"
+                        + "(()=>{this.terminal.scrollToBottom()\n})();\n}) [true]",
+                "return new Promise(resolve=>this.whenInitialized(()=>resolve([this.currentLine]))) []"),
+                ui.dumpInvocations());
+    }
+
+    @Test
+    public void testPendingQueryCount() {
+        xterm.setQueryTimeout(null);
+        xterm.hasSelection();
+        xterm.hasSelection();
+        xterm.getSelection();
+        assertEquals(2, xterm.getPendingQueryCount());
+
+        JsonArray json = Json.createArray();
+        json.set(0, true);
+        ui.dumpPendingInvocations().get(1).complete(json);
+        assertEquals(1, xterm.getPendingQueryCount());
+    }
+
+    @Test
+    public void testQueriesAreCancelledOnDetach() {
+        CompletableFuture<String> future = xterm.getCurrentLine();
+        CompletableFuture<String> continuation = future.thenApply(String::trim);
+        ui.remove(xterm);
+        assertTrue(future.isCompletedExceptionally());
+        assertTrue(continuation.isCompletedExceptionally());
+        assertEquals(0, xterm.getPendingQueryCount());
+    }
+
+    @Test
+    public void testQueryTimeout() throws InterruptedException {
+        xterm.setQueryTimeout(Duration.ofMillis(50));
+        CompletableFuture<Boolean> future = xterm.hasSelection();
+        try {
+            future.get(5, TimeUnit.SECONDS);
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof TimeoutException);
+        } catch (TimeoutException e) {
+            fail("the query did not time out");
+        }
+        synchronized (ui) {
+            assertEquals(0, xterm.getPendingQueryCount());
+        }
+    }
+
+}
@@ -0,0 +1,125 @@
+/*-
+ * #%L
+ * XTerm Console Addon
+ * %%
+ * Copyright (C) 2020 - 2026 Flowing Code
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.flowingcode.vaadin.addons.xterm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.vaadin.flow.component.UIDetachedException;
+import com.vaadin.flow.server.Command;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.Flow;
+import java.util.concurrent.Future;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TerminalSubscriberTest extends AbstractTerminalTest {
+
+    private List<Long> requests;
+    private TerminalSubscriber<String> subscriber;
+
+    @Override
+    @Before
+    public void setup() {
+        super.setup();
+        requests = new ArrayList<>();
+        subscriber = TerminalSubscriber.ofStrings(xterm).withBatchSize(2).withCompletionTrailer("done");
+        subscriber.onSubscribe(new Flow.Subscription() {
+            @Override
+            public void request(long n) {
+                requests.add(n);
+            }
+
+            @Override
+            public void cancel() {}
+        });
+    }
+
+    private static String base64(String s) {
+        return Base64.getEncoder().encodeToString(s.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testDemandFollowsAcknowledgements() {
+        xterm.setOutputHighWaterMark(4);
+        assertEquals(List.of(2L), requests);
+
+        subscriber.onNext("foo");
+        subscriber.onNext("bar");
+        assertEquals(List.of(2L), requests);
+        assertEquals(List.of("this.writeBase64($0,$1) [" + base64("foobar") + ", 6]"),
+                ui.dumpInvocations());
+
+        xterm.getFlowControl().release(6);
+        assertEquals(List.of(2L, 2L), requests);
+    }
+
+    @Test
+    public void testCompletionTrailer() {
+        subscriber.onNext("foo");
+        subscriber.onComplete();
+        assertEquals(List.of(
+                "this.writeBase64($0,$1) [" + base64("foo") + ", 3]",
+                "this.terminal.write($0,()=>this.acknowledgeWrite($1)) [done, 4]"), ui.dumpInvocations());
+    }
+
+    @Test
+    public void testCancelRemovesReleaseListener() {
+        boolean[] detached = {false};
+        TestUI ui = new TestUI() {
+            @Override
+            public synchronized Future<Void> access(Command command) {
+                if (detached[0]) {
+                    throw new UIDetachedException();
+                }
+                return super.access(command);
+            }
+        };
+        XTerm xterm = new XTerm();
+        ui.add(xterm);
+        ui.initialize(xterm);
+
+        List<Long> requests = new ArrayList<>();
+        boolean[] cancelled = {false};
+        TerminalSubscriber<String> subscriber = TerminalSubscriber.ofStrings(xterm).withBatchSize(1);
+        subscriber.onSubscribe(new Flow.Subscription() {
+            @Override
+            public void request(long n) {
+                requests.add(n);
+            }
+
+            @Override
+            public void cancel() {
+                cancelled[0] = true;
+            }
+        });
+        assertEquals(List.of(1L), requests);
+        assertEquals(1, xterm.getFlowControl().getReleaseListenerCount());
+
+        detached[0] = true;
+        subscriber.onNext("bar");
+        assertTrue(cancelled[0]);
+        assertEquals(0, xterm.getFlowControl().getReleaseListenerCount());
+    }
+
+}
@@ -0,0 +1,85 @@
+/*-
+ * #%L
+ * XTerm Console Addon
+ * %%
+ * Copyright (C) 2020 - 2026 Flowing Code
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.flowingcode.vaadin.addons.xterm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+public class TerminalWriterTest extends AbstractTerminalTest {
+
+    @Test
+    public void testWriterIsShared() {
+        assertSame(xterm.getTerminalWriter(), xterm.getTerminalWriter());
+    }
+
+    @Test
+    public void testFlushDeliversQueuedText() throws IOException {
+        TerminalWriter writer = xterm.getTerminalWriter();
+        writer.setFlushInterval(Duration.ofHours(1));
+        writer.write("foo");
+        writer.println("bar");
+        writer.flush();
+        assertEquals(List.of("this.terminal.write($0,()=>this.acknowledgeWrite($1)) [foobar\r\n, 8]"),
+                ui.dumpInvocations());
+    }
+
+    @Test
+    public void testConcurrentWritersThroughPreserveStateAddon() throws Exception {
+        PreserveStateAddon addon = new PreserveStateAddon(xterm);
+        TerminalWriter writer = addon.getTerminalWriter();
+        writer.setFlushInterval(Duration.ofMillis(1));
+
+        int threads = 8;
+        int lines = 100;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        for (int i = 0; i < threads; i++) {
+            String name = "worker" + i;
+            executor.submit(() -> {
+                for (int j = 0; j < lines; j++) {
+                    writer.println(name);
+                }
+                return null;
+            });
+        }
+        executor.shutdown();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+
+        writer.close();
+        // a drain that started before close() may still be running on the scheduler thread
+        String[][] holder = new String[1][];
+        ui.access(() -> holder[0] = addon.getScrollbackBuffer().split("\r\n"));
+        String[] output = holder[0];
+        assertEquals(threads * lines, output.length);
+        for (int i = 0; i < threads; i++) {
+            String name = "worker" + i;
+            assertEquals(lines, Arrays.stream(output).filter(name::equals).count());
+        }
+    }
+
+}
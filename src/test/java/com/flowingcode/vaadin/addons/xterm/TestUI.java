@@ -0,0 +1,90 @@
+/*-
+ * #%L
+ * XTerm Console Addon
+ * %%
+ * Copyright (C) 2020 - 2026 Flowing Code
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.flowingcode.vaadin.addons.xterm;
+
+import com.vaadin.flow.component.UI;
+import com.vaadin.flow.component.internal.PendingJavaScriptInvocation;
+import com.vaadin.flow.component.internal.UIInternals.JavaScriptInvocation;
+import com.vaadin.flow.server.Command;
+import com.vaadin.flow.server.VaadinSession;
+import elemental.json.JsonValue;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/** A UI that records the JavaScript invocations sent by its components. */
+@SuppressWarnings("serial")
+class TestUI extends UI {
+
+    private static final Pattern WRAPPED_EXPRESSION =
+            Pattern.compile("return \\(function\\(\\) \\{ (.*)\\}\\)\\.apply\\(\\$\\d+\\)", Pattern.DOTALL);
+
+    TestUI() {
+        getInternals().setSession(new VaadinSession(null) {
+            @Override
+            public boolean hasLock() {
+                return true;
+            }
+        });
+    }
+
+    /** Runs the command immediately, serialized as if it held the session lock. */
+    @Override
+    public synchronized Future<Void> access(Command command) {
+        command.execute();
+        return CompletableFuture.completedFuture(null);
+    }
+
+    /** Simulates the {@code terminal-initialized} event of the given terminal. */
+    void initialize(XTermBase xterm) {
+        xterm.afterInitialization();
+    }
+
+    /**
+     * Runs the before-client-response tasks and returns the pending invocations, formatted as the
+     * expression followed by its parameters.
+     */
+    List<String> dumpInvocations() {
+        return dumpPendingInvocations().stream().map(TestUI::format).collect(Collectors.toList());
+    }
+
+    /** Runs the before-client-response tasks and returns the pending invocations. */
+    List<PendingJavaScriptInvocation> dumpPendingInvocations() {
+        getInternals().getStateTree().runExecutionsBeforeClientResponse();
+        return getInternals().dumpPendingJavaScriptInvocations();
+    }
+
+    /** Formats an invocation as the expression followed by its parameters. */
+    static String format(PendingJavaScriptInvocation pending) {
+        JavaScriptInvocation invocation = pending.getInvocation();
+        // the last parameter is the element that owns the invocation
+        List<Object> parameters = invocation.getParameters();
+        parameters = parameters.subList(0, parameters.size() - 1);
+        Matcher matcher = WRAPPED_EXPRESSION.matcher(invocation.getExpression());
+        String expression = matcher.matches() ? matcher.group(1) : invocation.getExpression();
+        return expression + " " + parameters.stream()
+                .map(p -> p instanceof JsonValue ? ((JsonValue) p).toJson() : String.valueOf(p))
+                .collect(Collectors.joining(", ", "[", "]"));
+    }
+
+}
@@ -0,0 +1,62 @@
+/*-
+ * #%L
+ * XTerm Console Addon
+ * %%
+ * Copyright (C) 2020 - 2026 Flowing Code
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.flowingcode.vaadin.addons.xterm;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.List;
+import org.junit.Test;
+
+public class WriteCoalescingTest extends AbstractTerminalTest {
+
+    @Test
+    public void testConsecutiveWritesAreMerged() {
+        xterm.write("foo");
+        xterm.writeln("bar");
+        xterm.write("baz");
+        assertEquals(List.of("this.terminal.write($0) [foobar\r\nbaz]"), ui.dumpInvocations());
+        assertEquals(2, xterm.getCoalescedWriteCount());
+    }
+
+    @Test
+    public void testWritesAreFlushedBeforeOtherCommands() {
+        xterm.write("foo");
+        xterm.write("bar");
+        xterm.clear();
+        xterm.write("baz");
+        assertEquals(List.of(
+                "this.terminal.write($0) [foobar]",
+                "this.terminal.clear() []",
+                "this.terminal.write($0) [baz]"), ui.dumpInvocations());
+        assertEquals(1, xterm.getCoalescedWriteCount());
+    }
+
+    @Test
+    public void testWriteCoalescingDisabled() {
+        xterm.setWriteCoalescingEnabled(false);
+        xterm.write("foo");
+        xterm.write("bar");
+        assertEquals(List.of(
+                "this.terminal.write($0) [foo]",
+                "this.terminal.write($0) [bar]"), ui.dumpInvocations());
+        assertEquals(0, xterm.getCoalescedWriteCount());
+    }
+
+}
@@ -113,4 +113,22 @@ public class StateMemoizerTest {
         assertEquals("bar", bean.getFoo());
         assertEquals(25, bean.getBar());
     }
+
+    @Test
+    public void concurrentSetterCallsAndApply() throws InterruptedException {
+        Thread writer = new Thread(() -> {
+            for (int i = 0; i < 10000; i++) {
+                proxy.setBar(i);
+                proxy.setFoo(Integer.toString(i));
+            }
+        });
+        writer.start();
+        for (int i = 0; i < 1000; i++) {
+            memoizer.apply();
+        }
+        writer.join();
+        memoizer.apply();
+        assertEquals("9999", bean.getFoo());
+        assertEquals(9999, bean.getBar());
+    }
 }